@@ -0,0 +1,116 @@
+package bench;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class BenchmarkFiles {
+    /*
+    synthetic input files for the benchmarks. Both files are shaped like
+    the sample files, with random account numbers and balances made with
+    RandomString. File 2 has its columns in a different order, about 1 in
+    100 rows of file 1 are missing from it, about 1 in 100 rows have a
+    different balance, and about 1 in 100 rows aren't in file 1 at all.
+    Files are generated with fixed seeds, so they are only written once
+    per size and then reused by every benchmark (and every fork)
+    */
+    public static final String[] COMBINATION = new String[] {
+        "Customer ID#", "Account No.", "Currency", "Type"
+    };
+    static final String HEADERS1 = (
+        "Customer ID#,Account No.,Currency,Type,Balance"
+    );
+    static final String HEADERS2 = (
+        "Balance,Type,Currency,Account No.,Customer ID#"
+    );
+
+    private static final String UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final String DIGITS = "0123456789";
+
+    private static final String[] CURRENCIES = new String[] {
+        "USD", "AUD", "INR", "SGD"
+    };
+    private static final String[] TYPES = new String[] {
+        "SAVINGS", "CURRENT"
+    };
+
+    public static String get_file1(int num_rows) throws Throwable {
+        return get_files(num_rows)[0];
+    }
+
+    public static String get_file2(int num_rows) throws Throwable {
+        return get_files(num_rows)[1];
+    }
+
+    private static synchronized String[] get_files(
+        int num_rows
+    ) throws Throwable {
+        Path directory = Path.of(
+            System.getProperty("java.io.tmpdir"), "campaign-bench"
+        );
+        Files.createDirectories(directory);
+        Path path1 = directory.resolve("ledger-" + num_rows + "-1.csv");
+        Path path2 = directory.resolve("ledger-" + num_rows + "-2.csv");
+
+        if (!Files.exists(path1) || !Files.exists(path2)) {
+            write_files(path1, path2, num_rows);
+        }
+        return new String[] {path1.toString(), path2.toString()};
+    }
+
+    private static void write_files(
+        Path path1, Path path2, int num_rows
+    ) throws Throwable {
+        Random generator = new Random(num_rows);
+        Object accounts = Checker.random_string(
+            10, generator, UPPER + DIGITS
+        );
+        Object balances = Checker.random_string(7, generator, DIGITS);
+
+        // write to temporary files first so that an interrupted run
+        // never leaves half written files behind to be reused
+        Path temp_path1 = Path.of(path1 + ".tmp");
+        Path temp_path2 = Path.of(path2 + ".tmp");
+
+        try (
+            BufferedWriter writer1 = Files.newBufferedWriter(temp_path1);
+            BufferedWriter writer2 = Files.newBufferedWriter(temp_path2)
+        ) {
+            writer1.write(HEADERS1 + "\n");
+            writer2.write(HEADERS2 + "\n");
+
+            for (int k=0; k<num_rows; k++) {
+                String id = "ID" + k;
+                String account = Checker.next_string(accounts);
+                String currency = CURRENCIES[generator.nextInt(4)];
+                String type = TYPES[generator.nextInt(2)];
+                String balance = Checker.next_string(balances);
+
+                writer1.write(String.join(
+                    ",", id, account, currency, type, balance
+                ) + "\n");
+
+                int change = generator.nextInt(100);
+                if (change == 0) {
+                    // row is missing from file 2
+                    continue;
+                } else if (change == 1) {
+                    balance = Checker.next_string(balances);
+                } else if (change == 2) {
+                    // extra row that is only in file 2
+                    writer2.write(String.join(
+                        ",", Checker.next_string(balances), type, currency,
+                        Checker.next_string(accounts), "EXTRA" + k
+                    ) + "\n");
+                }
+
+                writer2.write(String.join(
+                    ",", balance, type, currency, account, id
+                ) + "\n");
+            }
+        }
+
+        Files.move(temp_path1, path1, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(temp_path2, path2, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
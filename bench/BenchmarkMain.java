@@ -0,0 +1,32 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.*;
+
+public class BenchmarkMain {
+    /*
+    runs the benchmarks with the GC profiler, which reports the bytes
+    allocated per operation (gc.alloc.rate.norm) next to the timings.
+    Arguments are regexes of the benchmarks to run (all benchmarks are
+    run if there are none), and results are also saved as json to
+    bench-results.json
+    */
+    public static void main(String[] args) throws RunnerException {
+        ChainedOptionsBuilder builder = new OptionsBuilder()
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result("bench-results.json");
+
+        if (args.length == 0) {
+            builder.include(".*Benchmark\\.");
+        }
+        for (String pattern : args) {
+            builder.include(pattern);
+        }
+
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,247 @@
+package bench;
+
+import java.lang.invoke.*;
+import java.util.*;
+
+final class Checker {
+    /*
+    the checker's classes are in the default package, which can't be
+    referred to from a named package (and JMH only runs benchmarks that
+    are in one), so the benchmarks call them through the method handles
+    here instead, passing csv files around as plain objects. The handles
+    are static final, so the JIT treats them as constants and inlines
+    calls through them just like direct calls
+    */
+    private static final MethodHandles.Lookup LOOKUP = (
+        MethodHandles.publicLookup()
+    );
+
+    private static final Class<?> RECORD_CHECKER = get_class(
+        "RecordChecker"
+    );
+    private static final Class<?> CSV_FILE = get_class("CsvFile");
+    private static final Class<?> COLUMNAR_CSV_FILE = get_class(
+        "ColumnarCsvFile"
+    );
+    private static final Class<?> RANDOM_STRING = get_class(
+        "RandomString"
+    );
+
+    private static final MethodHandle READ_CSV = find_static(
+        "read_csv", CSV_FILE, String.class
+    );
+    private static final MethodHandle READ_CSV_PARALLEL = find_static(
+        "read_csv_parallel", CSV_FILE, String.class, int.class
+    );
+    private static final MethodHandle READ_COLUMNAR_CSV = find_static(
+        "read_columnar_csv", COLUMNAR_CSV_FILE, String.class
+    );
+    private static final MethodHandle GET_MISMATCH_ROWS = find_static(
+        "get_mismatch_rows", ArrayList.class,
+        CSV_FILE, CSV_FILE, String[].class
+    );
+    private static final MethodHandle GET_PARTITIONED_MISMATCH_ROWS = (
+        find_static(
+            "get_mismatch_rows", ArrayList.class,
+            CSV_FILE, CSV_FILE, String[].class, int.class
+        )
+    );
+    private static final MethodHandle GET_COLUMNAR_MISMATCH_ROWS = (
+        find_static(
+            "get_mismatch_rows", ArrayList.class,
+            COLUMNAR_CSV_FILE, COLUMNAR_CSV_FILE, String[].class
+        )
+    );
+    private static final MethodHandle GET_NOMATCH_ROWS = find_static(
+        "get_nomatch_rows", ArrayList.class,
+        CSV_FILE, CSV_FILE, String[].class
+    );
+    private static final MethodHandle GET_CROSS_NOMATCH_ROWS = find_static(
+        "get_cross_nomatch_rows", ArrayList.class,
+        CSV_FILE, CSV_FILE, String[].class
+    );
+    private static final MethodHandle REORDER_TO_MATCH = find_static(
+        "reorder_to_match", CSV_FILE, CSV_FILE, CSV_FILE, String[].class
+    );
+    private static final MethodHandle EXPORT_MISMATCHES = find_static(
+        "export_mismatches", String.class, ArrayList.class
+    );
+
+    private static final MethodHandle NUM_ROWS = find_virtual(
+        CSV_FILE, "num_rows", int.class
+    );
+    private static final MethodHandle GET_ROW = find_virtual(
+        CSV_FILE, "get_row", String[].class, int.class
+    );
+    private static final MethodHandle GET_HEADERS = find_virtual(
+        CSV_FILE, "get_headers", String[].class
+    );
+    private static final MethodHandle REORDER_COLUMNS = find_virtual(
+        CSV_FILE, "reorder_columns", CSV_FILE, String[].class
+    );
+
+    private static final MethodHandle NEW_RANDOM_STRING = find_constructor(
+        RANDOM_STRING, int.class, Random.class, String.class
+    );
+    private static final MethodHandle NEXT_STRING = find_virtual(
+        RANDOM_STRING, "next_string", String.class
+    );
+
+    private Checker() {}
+
+    public static Object read_csv(String filename) throws Throwable {
+        return (Object) READ_CSV.invoke(filename);
+    }
+
+    public static Object read_csv_parallel(
+        String filename, int num_threads
+    ) throws Throwable {
+        return (Object) READ_CSV_PARALLEL.invoke(filename, num_threads);
+    }
+
+    public static Object read_columnar_csv(
+        String filename
+    ) throws Throwable {
+        return (Object) READ_COLUMNAR_CSV.invoke(filename);
+    }
+
+    public static Object get_mismatch_rows(
+        Object csv_file1, Object csv_file2, String[] combination
+    ) throws Throwable {
+        return (Object) GET_MISMATCH_ROWS.invoke(
+            csv_file1, csv_file2, combination
+        );
+    }
+
+    public static Object get_mismatch_rows(
+        Object csv_file1, Object csv_file2, String[] combination,
+        int num_threads
+    ) throws Throwable {
+        return (Object) GET_PARTITIONED_MISMATCH_ROWS.invoke(
+            csv_file1, csv_file2, combination, num_threads
+        );
+    }
+
+    public static Object get_columnar_mismatch_rows(
+        Object csv_file1, Object csv_file2, String[] combination
+    ) throws Throwable {
+        return (Object) GET_COLUMNAR_MISMATCH_ROWS.invoke(
+            csv_file1, csv_file2, combination
+        );
+    }
+
+    public static Object get_nomatch_rows(
+        Object csv_file1, Object csv_file2, String[] combination
+    ) throws Throwable {
+        return (Object) GET_NOMATCH_ROWS.invoke(
+            csv_file1, csv_file2, combination
+        );
+    }
+
+    public static Object get_cross_nomatch_rows(
+        Object csv_file1, Object csv_file2, String[] combination
+    ) throws Throwable {
+        return (Object) GET_CROSS_NOMATCH_ROWS.invoke(
+            csv_file1, csv_file2, combination
+        );
+    }
+
+    public static Object reorder_to_match(
+        Object csv_file1, Object csv_file2, String[] combination
+    ) throws Throwable {
+        return (Object) REORDER_TO_MATCH.invoke(
+            csv_file1, csv_file2, combination
+        );
+    }
+
+    public static String export_mismatches(
+        ArrayList<String[]> rows
+    ) throws Throwable {
+        return (String) EXPORT_MISMATCHES.invoke(rows);
+    }
+
+    public static int num_rows(Object csv_file) throws Throwable {
+        return (int) NUM_ROWS.invoke(csv_file);
+    }
+
+    public static String[] get_row(
+        Object csv_file, int index
+    ) throws Throwable {
+        return (String[]) GET_ROW.invoke(csv_file, index);
+    }
+
+    public static String[] get_headers(Object csv_file) throws Throwable {
+        return (String[]) GET_HEADERS.invoke(csv_file);
+    }
+
+    public static Object reorder_columns(
+        Object csv_file, String[] new_columns
+    ) throws Throwable {
+        return (Object) REORDER_COLUMNS.invoke(csv_file, new_columns);
+    }
+
+    public static Object random_string(
+        int length, Random random, String symbols
+    ) throws Throwable {
+        return (Object) NEW_RANDOM_STRING.invoke(length, random, symbols);
+    }
+
+    public static String next_string(Object generator) throws Throwable {
+        return (String) NEXT_STRING.invoke(generator);
+    }
+
+    private static Class<?> get_class(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(
+                "CHECKER CLASS NOT ON CLASSPATH " + name, e
+            );
+        }
+    }
+
+    private static MethodHandle find_static(
+        String name, Class<?> return_type, Class<?>... parameter_types
+    ) {
+        try {
+            return LOOKUP.findStatic(
+                RECORD_CHECKER, name,
+                MethodType.methodType(return_type, parameter_types)
+            );
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(
+                "CHECKER METHOD NOT FOUND " + name, e
+            );
+        }
+    }
+
+    private static MethodHandle find_virtual(
+        Class<?> owner, String name, Class<?> return_type,
+        Class<?>... parameter_types
+    ) {
+        try {
+            return LOOKUP.findVirtual(
+                owner, name,
+                MethodType.methodType(return_type, parameter_types)
+            );
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(
+                "CHECKER METHOD NOT FOUND " + name, e
+            );
+        }
+    }
+
+    private static MethodHandle find_constructor(
+        Class<?> owner, Class<?>... parameter_types
+    ) {
+        try {
+            return LOOKUP.findConstructor(
+                owner, MethodType.methodType(void.class, parameter_types)
+            );
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(
+                "CHECKER CONSTRUCTOR NOT FOUND " + owner.getName(), e
+            );
+        }
+    }
+}
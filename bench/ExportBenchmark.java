@@ -0,0 +1,53 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExportBenchmark {
+    /*
+    benchmark for writing mismatched rows to the mismatches folder.
+    The rows written are every row of file 1 (instead of the ~1% of rows
+    that actually mismatch) so that writing dominates the measurement
+    */
+    @Param({"10000", "1000000", "10000000"})
+    public int num_rows;
+
+    private ArrayList<String[]> rows;
+    private final HashSet<String> export_paths = new HashSet<>();
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        Object csv_file = Checker.read_csv(
+            BenchmarkFiles.get_file1(this.num_rows)
+        );
+        this.rows = new ArrayList<>();
+        for (int k=0; k<Checker.num_rows(csv_file); k++) {
+            this.rows.add(Checker.get_row(csv_file, k));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void delete_exports() throws IOException {
+        for (String export_path : this.export_paths) {
+            Files.deleteIfExists(Path.of(export_path));
+        }
+        this.export_paths.clear();
+    }
+
+    @Benchmark
+    public String export_mismatches() throws Throwable {
+        String export_path = Checker.export_mismatches(this.rows);
+        this.export_paths.add(export_path);
+        return export_path;
+    }
+}
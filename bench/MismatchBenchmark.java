@@ -0,0 +1,58 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MismatchBenchmark {
+    /*
+    benchmarks for finding rows with matching unique combination
+    values but different values in the other columns
+    */
+    @Param({"10000", "1000000", "10000000"})
+    public int num_rows;
+
+    private Object csv_file1;
+    private Object csv_file2;
+    private Object columnar_file1;
+    private Object columnar_file2;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        String filename1 = BenchmarkFiles.get_file1(this.num_rows);
+        String filename2 = BenchmarkFiles.get_file2(this.num_rows);
+        this.csv_file1 = Checker.read_csv(filename1);
+        this.csv_file2 = Checker.read_csv(filename2);
+        this.columnar_file1 = Checker.read_columnar_csv(filename1);
+        this.columnar_file2 = Checker.read_columnar_csv(filename2);
+    }
+
+    @Benchmark
+    public Object get_mismatch_rows() throws Throwable {
+        return Checker.get_mismatch_rows(
+            this.csv_file1, this.csv_file2, BenchmarkFiles.COMBINATION
+        );
+    }
+
+    @Benchmark
+    public Object get_mismatch_rows_partitioned() throws Throwable {
+        return Checker.get_mismatch_rows(
+            this.csv_file1, this.csv_file2, BenchmarkFiles.COMBINATION,
+            Runtime.getRuntime().availableProcessors()
+        );
+    }
+
+    @Benchmark
+    public Object get_mismatch_rows_columnar() throws Throwable {
+        return Checker.get_columnar_mismatch_rows(
+            this.columnar_file1, this.columnar_file2,
+            BenchmarkFiles.COMBINATION
+        );
+    }
+}
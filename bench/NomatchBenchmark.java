@@ -0,0 +1,47 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NomatchBenchmark {
+    /*
+    benchmarks for finding rows that have no matching
+    unique combination values in the other file
+    */
+    @Param({"10000", "1000000", "10000000"})
+    public int num_rows;
+
+    private Object csv_file1;
+    private Object csv_file2;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        this.csv_file1 = Checker.read_csv(
+            BenchmarkFiles.get_file1(this.num_rows)
+        );
+        this.csv_file2 = Checker.read_csv(
+            BenchmarkFiles.get_file2(this.num_rows)
+        );
+    }
+
+    @Benchmark
+    public Object get_nomatch_rows() throws Throwable {
+        return Checker.get_nomatch_rows(
+            this.csv_file1, this.csv_file2, BenchmarkFiles.COMBINATION
+        );
+    }
+
+    @Benchmark
+    public Object get_cross_nomatch_rows() throws Throwable {
+        return Checker.get_cross_nomatch_rows(
+            this.csv_file1, this.csv_file2, BenchmarkFiles.COMBINATION
+        );
+    }
+}
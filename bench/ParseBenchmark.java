@@ -0,0 +1,43 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParseBenchmark {
+    /*
+    benchmarks for reading a csv file into memory
+    */
+    @Param({"10000", "1000000", "10000000"})
+    public int num_rows;
+
+    private String filename;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        this.filename = BenchmarkFiles.get_file1(this.num_rows);
+    }
+
+    @Benchmark
+    public Object read_csv() throws Throwable {
+        return Checker.read_csv(this.filename);
+    }
+
+    @Benchmark
+    public Object read_csv_parallel() throws Throwable {
+        return Checker.read_csv_parallel(
+            this.filename, Runtime.getRuntime().availableProcessors()
+        );
+    }
+
+    @Benchmark
+    public Object read_columnar_csv() throws Throwable {
+        return Checker.read_columnar_csv(this.filename);
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+public class AsyncLogger implements CheckerLogger, AutoCloseable {
+    /*
+    passes log messages on to another logger on a dedicated logging
+    thread, so that threads logging messages only ever add them to a
+    queue instead of waiting on the other logger (like a ConsoleLogger,
+    where every thread would otherwise take turns holding the lock of
+    System.out). Messages are passed on in the order they were queued.
+    If the queue is full, messages are dropped instead of blocking the
+    thread that logs them (see num_dropped).
+
+    close waits for every queued message to be passed on.
+    The other logger isn't closed by this logger
+    */
+    static final int DEFAULT_CAPACITY = 8192;
+
+    private static class Entry {
+        final LogLevel level;
+        final String message;
+        final Throwable error;
+
+        Entry(LogLevel level, String message, Throwable error) {
+            this.level = level;
+            this.message = message;
+            this.error = error;
+        }
+    }
+
+    // marks the end of the messages in the queue
+    private static final Entry END = new Entry(null, null, null);
+
+    private final CheckerLogger logger;
+    private final BlockingQueue<Entry> queue;
+    private final Thread logger_thread;
+    private final LongAdder num_dropped = new LongAdder();
+    private volatile boolean closed = false;
+
+    public AsyncLogger(CheckerLogger logger) {
+        this(logger, DEFAULT_CAPACITY);
+    }
+
+    public AsyncLogger(CheckerLogger logger, int capacity) {
+        // capacity is the number of messages that can be queued
+        if (capacity < 1) throw new IllegalArgumentException();
+        this.logger = logger;
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.logger_thread = new Thread(this::drain, "checker-logger");
+        this.logger_thread.setDaemon(true);
+        this.logger_thread.start();
+    }
+
+    private void drain() {
+        while (true) {
+            Entry entry;
+            try {
+                entry = this.queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (entry == END) { return; }
+            try {
+                this.logger.log(entry.level, entry.message, entry.error);
+            } catch (RuntimeException e) {
+                // a failing logger shouldn't stop later messages
+                this.num_dropped.increment();
+            }
+        }
+    }
+
+    @Override
+    public void log(LogLevel level, String message, Throwable error) {
+        if (this.closed || !this.queue.offer(new Entry(level, message, error))) {
+            this.num_dropped.increment();
+        }
+    }
+
+    public long num_dropped() {
+        // number of messages that were never passed on
+        return this.num_dropped.sum();
+    }
+
+    @Override
+    public void close() {
+        /*
+        waits for the queued messages to be passed on. If the waiting
+        thread is interrupted, its interrupt flag is set again and a
+        CancellationException is thrown (messages still in the queue
+        are passed on by the logging thread in the background)
+        */
+        if (this.closed) { return; }
+        this.closed = true;
+
+        try {
+            this.queue.put(END);
+            this.logger_thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("LOGGER CLOSE INTERRUPTED");
+        }
+    }
+}
@@ -0,0 +1,232 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class BatchReconciler {
+    /*
+    diffs many candidate files against a single master file. The master
+    file is read and indexed on the unique combination once, then each
+    candidate is read and its rows are looked up in the master index
+    (instead of indexing the candidate and going through every row of
+    the master), so the time taken grows with the total size of the
+    candidates and not with the number of candidates times the size
+    of the master. Candidates are diffed in parallel.
+
+    Each candidate gets its own mismatches file, with the same rows in
+    the same order as generate_diffs(master, candidate), and a summary
+    file lists the outcome of every candidate (errors in one candidate
+    don't stop the rest of the batch)
+    */
+    static final String SUMMARY_FILENAME = "summary.csv";
+
+    private final CsvFile master_file;
+    private final String[] combination;
+    private final KeyIndex master_index;
+    private final ProjectionPlan master_plan;
+    private final int num_threads;
+
+    public BatchReconciler(
+        String master_filename, String raw_combination, int num_threads
+    ) throws BadCombination, BadFileFormat, IOException {
+        if (num_threads < 1) throw new IllegalArgumentException();
+        this.combination = RecordChecker.parse_combination(raw_combination);
+        this.master_file = RecordChecker.read_csv(master_filename);
+        if (!this.master_file.has_columns(this.combination)) {
+            // unique combination columns aren't found in file
+            throw new BadCombination(RecordChecker.COMB_NOT_FOUND);
+        }
+
+        this.master_index = new KeyIndex(this.master_file, this.combination);
+        this.master_plan = this.master_file.get_projection_plan(
+            this.combination
+        );
+        this.num_threads = num_threads;
+    }
+
+    public ArrayList<String[]> get_mismatch_rows(
+        CsvFile candidate_file
+    ) throws BadCombination, FilesMismatch {
+        /*
+        same as RecordChecker.get_mismatch_rows(master, candidate),
+        found by probing the master index with the candidate rows
+        */
+        RecordChecker.check_comparable(
+            this.master_file, candidate_file, this.combination
+        );
+        String[] master_headers = this.master_file.get_headers();
+        String[] candidate_headers = candidate_file.get_headers();
+        ProjectionPlan candidate_plan = new ProjectionPlan(
+            candidate_headers, this.combination, master_headers
+        );
+        // position in the candidate of every column of the master
+        int[] column_order = new int[master_headers.length];
+        List<String> candidate_columns = Arrays.asList(candidate_headers);
+        for (int k=0; k<master_headers.length; k++) {
+            column_order[k] = candidate_columns.indexOf(master_headers[k]);
+        }
+
+        // pairs of <master row index, candidate row index> that mismatch
+        ArrayList<long[]> mismatches = new ArrayList<>();
+        for (int k=0; k<candidate_file.num_rows(); k++) {
+            String[] candidate_row = candidate_file.peek_row(k);
+
+            for (
+                int row_index = this.master_index.first_match(
+                    candidate_row, candidate_plan
+                );
+                row_index != -1;
+                row_index = this.master_index.next_match(row_index)
+            ) {
+                String[] master_row = this.master_file.peek_row(row_index);
+                if (!this.master_plan.values_equal(
+                    master_row, candidate_plan, candidate_row
+                )) {
+                    mismatches.add(new long[] {row_index, k});
+                }
+            }
+        }
+
+        // order the mismatches the way generate_diffs would: by master
+        // row, with the candidate rows of each master row in file order
+        mismatches.sort(
+            Comparator.<long[]>comparingLong(pair -> pair[0])
+                .thenComparingLong(pair -> pair[1])
+        );
+
+        ArrayList<String[]> all_mismatch_rows = new ArrayList<>();
+        for (int k=0; k<mismatches.size(); k++) {
+            int master_index = (int) mismatches.get(k)[0];
+            String[] candidate_row = candidate_file.peek_row(
+                (int) mismatches.get(k)[1]
+            );
+
+            String[] reordered_row = new String[column_order.length];
+            for (int i=0; i<column_order.length; i++) {
+                reordered_row[i] = candidate_row[column_order[i]];
+            }
+            all_mismatch_rows.add(reordered_row);
+
+            boolean is_last = (
+                k + 1 == mismatches.size() ||
+                mismatches.get(k + 1)[0] != master_index
+            );
+            if (is_last) {
+                all_mismatch_rows.add(this.master_file.get_row(master_index));
+            }
+        }
+
+        return all_mismatch_rows;
+    }
+
+    public ArrayList<BatchResult> run(
+        List<String> candidate_filenames, Path output_dir
+    ) throws IOException {
+        /*
+        diff every candidate against the master, writing the mismatches
+        of candidate k to mismatches-k.csv in output_dir (which is
+        created if need be) and the summary to summary.csv.
+        returns the result of each candidate, in the order given
+        */
+        Files.createDirectories(output_dir);
+        ArrayList<Callable<BatchResult>> tasks = new ArrayList<>();
+        for (int k=0; k<candidate_filenames.size(); k++) {
+            String candidate_filename = candidate_filenames.get(k);
+            String export_path = output_dir.resolve(
+                "mismatches-" + k + ".csv"
+            ).toString();
+            tasks.add(() -> this.run_candidate(candidate_filename, export_path));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+            this.num_threads
+        );
+        ArrayList<BatchResult> results = new ArrayList<>();
+
+        try {
+            for (Future<BatchResult> result : executor.invokeAll(tasks)) {
+                results.add(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("BATCH INTERRUPTED");
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+
+        write_summary(results, output_dir.resolve(SUMMARY_FILENAME));
+        return results;
+    }
+
+    private BatchResult run_candidate(
+        String candidate_filename, String export_path
+    ) {
+        try {
+            CsvFile candidate_file = RecordChecker.read_csv(candidate_filename);
+            ArrayList<String[]> all_mismatch_rows = this.get_mismatch_rows(
+                candidate_file
+            );
+
+            try (MismatchWriter writer = new MismatchWriter(export_path)) {
+                for (String[] row : all_mismatch_rows) {
+                    writer.add_row(row);
+                }
+            }
+            return new BatchResult(
+                candidate_filename, export_path, all_mismatch_rows.size(),
+                null
+            );
+        } catch (
+            IOException | BadFileFormat | BadCombination | FilesMismatch |
+            RuntimeException e
+        ) {
+            // unchecked errors are kept to their own candidate as well,
+            // instead of failing the whole batch
+            String error = e.getMessage();
+            return new BatchResult(
+                candidate_filename, null, 0,
+                (error != null) ? error : e.toString()
+            );
+        }
+    }
+
+    private static void write_summary(
+        List<BatchResult> results, Path summary_path
+    ) throws IOException {
+        try (MismatchWriter writer = new MismatchWriter(
+            summary_path.toString()
+        )) {
+            // status goes last, so that the row of a failed candidate
+            // doesn't end with an (otherwise dropped) empty cell
+            writer.add_row(new String[] {
+                "candidate", "mismatch_rows", "export_path", "status"
+            });
+            for (BatchResult result : results) {
+                String export_path = "";
+                String status = "OK";
+                if (result.succeeded()) {
+                    export_path = to_summary_cell(result.export_path);
+                } else {
+                    status = to_summary_cell(result.error);
+                }
+                writer.add_row(new String[] {
+                    to_summary_cell(result.candidate_filename),
+                    Integer.toString(result.num_mismatch_rows),
+                    export_path, status
+                });
+            }
+        }
+    }
+
+    static String to_summary_cell(String value) {
+        /*
+        csv files aren't quoted (see RecordChecker.split_line), so
+        commas and line breaks in a value would split the summary row
+        into the wrong cells. Commas are replaced with semicolons and
+        line breaks with spaces
+        */
+        return value.replace(',', ';').replace('\r', ' ').replace('\n', ' ');
+    }
+}
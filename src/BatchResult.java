@@ -0,0 +1,26 @@
+public class BatchResult {
+    /*
+    outcome of diffing a single candidate file against the master
+    file in a batch (see BatchReconciler). error is null if the
+    candidate was diffed, otherwise export_path is null and error
+    is the message of the exception the candidate failed with
+    */
+    public final String candidate_filename;
+    public final String export_path;
+    public final int num_mismatch_rows;
+    public final String error;
+
+    public BatchResult(
+        String candidate_filename, String export_path,
+        int num_mismatch_rows, String error
+    ) {
+        this.candidate_filename = candidate_filename;
+        this.export_path = export_path;
+        this.num_mismatch_rows = num_mismatch_rows;
+        this.error = error;
+    }
+
+    public boolean succeeded() {
+        return this.error == null;
+    }
+}
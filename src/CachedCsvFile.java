@@ -0,0 +1,80 @@
+import java.util.*;
+
+public class CachedCsvFile {
+    /*
+    a parsed csv file held in a ParsedFileCache, along with the key
+    indexes and the hashes of row values that have been built on it,
+    so that they are only ever built once per file. Columns are
+    reordered through views (see ReorderedCsvFile), which don't
+    need to be cached.
+    Everything returned is shared with other users of the cache
+    and must not be modified
+    */
+    private final ParsedFileCache cache;
+    final String path;
+    final String identity;
+    private final CsvFile csv_file;
+    private final HashMap<List<String>, KeyIndex> key_indexes = (
+        new HashMap<>()
+    );
+    private final HashMap<List<String>, long[]> value_hashes = (
+        new HashMap<>()
+    );
+    // estimated heap used by the file, its indexes and hashes
+    volatile long memory_bytes;
+
+    CachedCsvFile(
+        ParsedFileCache cache, String path, String identity,
+        CsvFile csv_file
+    ) {
+        this.cache = cache;
+        this.path = path;
+        this.identity = identity;
+        this.csv_file = csv_file;
+        this.memory_bytes = csv_file.memory_bytes();
+    }
+
+    public CsvFile get_csv_file() {
+        return this.csv_file;
+    }
+
+    public synchronized KeyIndex get_key_index(String[] combination) {
+        /*
+        index of the file on the combination. Key indexes don't depend on
+        the order of the columns, so the same index can be used for
+        reordered views of the file as well
+        */
+        List<String> key = List.of(combination);
+        KeyIndex key_index = this.key_indexes.get(key);
+        if (key_index != null) {
+            this.cache.record_lookup(true);
+            return key_index;
+        }
+
+        this.cache.record_lookup(false);
+        key_index = new KeyIndex(this.csv_file, combination);
+        this.key_indexes.put(key, key_index);
+        this.cache.add_bytes(this, key_index.memory_bytes());
+        return key_index;
+    }
+
+    public synchronized long[] get_value_hashes(String[] combination) {
+        /*
+        hashes of the values of every row that aren't in the
+        combination (see CsvFile.hash_row_values). Like key indexes,
+        they don't depend on the order of the columns
+        */
+        List<String> key = List.of(combination);
+        long[] hashes = this.value_hashes.get(key);
+        if (hashes != null) {
+            this.cache.record_lookup(true);
+            return hashes;
+        }
+
+        this.cache.record_lookup(false);
+        hashes = this.csv_file.hash_row_values(combination);
+        this.value_hashes.put(key, hashes);
+        this.cache.add_bytes(this, 8L * hashes.length);
+        return hashes;
+    }
+}
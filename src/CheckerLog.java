@@ -0,0 +1,49 @@
+public final class CheckerLog {
+    /*
+    logging facility used by the checker in place of printing to
+    System.out. Nothing is logged unless a logger is installed with
+    set_logger (RecordChecker.main installs a ConsoleLogger), so when
+    the checker is used as a library logging costs a single volatile
+    read and never takes a lock. Messages that take work to build
+    should be guarded with is_enabled:
+
+        if (CheckerLog.is_enabled(LogLevel.INFO)) {
+            CheckerLog.log(LogLevel.INFO, Arrays.toString(headers));
+        }
+
+    Loggers are called on the thread that logs the message, so loggers
+    used by many threads at once should be wrapped in an AsyncLogger
+    */
+    private static volatile CheckerLogger logger = null;
+    private static volatile LogLevel min_level = LogLevel.INFO;
+
+    private CheckerLog() {}
+
+    public static void set_logger(CheckerLogger new_logger, LogLevel level) {
+        /*
+        log every message with at least the given level to new_logger
+        (or turn logging off if new_logger is null)
+        */
+        min_level = level;
+        logger = new_logger;
+    }
+
+    public static CheckerLogger get_logger() {
+        return logger;
+    }
+
+    public static boolean is_enabled(LogLevel level) {
+        return logger != null && level.compareTo(min_level) >= 0;
+    }
+
+    public static void log(LogLevel level, String message) {
+        log(level, message, null);
+    }
+
+    public static void log(LogLevel level, String message, Throwable error) {
+        CheckerLogger current_logger = logger;
+        if (current_logger == null) { return; }
+        if (level.compareTo(min_level) < 0) { return; }
+        current_logger.log(level, message, error);
+    }
+}
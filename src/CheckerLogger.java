@@ -0,0 +1,7 @@
+public interface CheckerLogger {
+    /*
+    receives the log messages of the checker (see CheckerLog).
+    error is the exception the message is about, or null
+    */
+    void log(LogLevel level, String message, Throwable error);
+}
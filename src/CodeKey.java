@@ -0,0 +1,26 @@
+import java.util.Arrays;
+
+public class CodeKey {
+    /*
+    hashable wrapper around the dictionary codes of the unique
+    combination columns of a row in a ColumnarCsvFile
+    */
+    private final int[] codes;
+    private final int hash;
+
+    public CodeKey(int[] codes) {
+        this.codes = codes;
+        this.hash = Arrays.hashCode(codes);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof CodeKey)) { return false; }
+        return Arrays.equals(this.codes, ((CodeKey) other).codes);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+}
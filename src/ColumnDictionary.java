@@ -0,0 +1,209 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class ColumnDictionary {
+    /*
+    dictionary of the distinct values in a single csv column, where
+    each distinct value is assigned an int code (in the order that the
+    values are first seen). The values are stored back to back as
+    UTF-8 bytes in a single byte array instead of as separate String
+    objects, and codes are looked up with an open addressing hash table
+    of codes, so a column with millions of repeated values only ever
+    stores each distinct value once
+    */
+    private static final int INITIAL_CAPACITY = 16;
+
+    private byte[] values = new byte[64];
+    // value with code k is stored in values[offsets[k]:offsets[k+1]]
+    private int[] offsets = new int[INITIAL_CAPACITY + 1];
+    private int num_values = 0;
+    // table of (code + 1) for each slot, 0 for empty slots
+    private int[] table = null;
+
+    public ColumnDictionary() {
+        this.table = new int[INITIAL_CAPACITY * 2];
+    }
+
+    ColumnDictionary(byte[] values, int[] offsets, int num_values) {
+        /*
+        dictionary of values that were already encoded elsewhere (see
+        CsvSnapshot), the lookup table is built the first time a value
+        is encoded or looked up
+        */
+        assert offsets.length >= num_values + 1;
+        this.values = values;
+        this.offsets = offsets;
+        this.num_values = num_values;
+    }
+
+    public int encode(String value) {
+        byte[] value_bytes = value.getBytes(StandardCharsets.UTF_8);
+        return this.encode(value_bytes, 0, value_bytes.length);
+    }
+
+    public int encode(byte[] buffer, int start, int end) {
+        /*
+        return the code of the value stored in buffer[start:end],
+        adding the value to the dictionary if it isn't already in it
+        */
+        int[] table = this.get_table();
+        int mask = table.length - 1;
+        int slot = hash(buffer, start, end) & mask;
+
+        while (table[slot] != 0) {
+            int code = table[slot] - 1;
+            if (this.value_equals(code, buffer, start, end)) {
+                return code;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int code = this.add_value(buffer, start, end);
+        table[slot] = code + 1;
+        if (this.num_values * 4 > table.length * 3) {
+            // keep the load factor of the hash table below 0.75
+            this.table = this.build_table(table.length * 2);
+        }
+        return code;
+    }
+
+    public int find(String value) {
+        byte[] value_bytes = value.getBytes(StandardCharsets.UTF_8);
+        return this.find(value_bytes, 0, value_bytes.length);
+    }
+
+    public int find(byte[] buffer, int start, int end) {
+        /*
+        return the code of the value stored in buffer[start:end],
+        or -1 if the value isn't in the dictionary
+        */
+        int[] table = this.get_table();
+        int mask = table.length - 1;
+        int slot = hash(buffer, start, end) & mask;
+
+        while (table[slot] != 0) {
+            int code = table[slot] - 1;
+            if (this.value_equals(code, buffer, start, end)) {
+                return code;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public int find_code_of(ColumnDictionary other, int other_code) {
+        /*
+        return the code in this dictionary of the value with
+        other_code in the other dictionary, or -1 if this
+        dictionary doesn't have the value
+        */
+        return this.find(
+            other.values, other.offsets[other_code],
+            other.offsets[other_code + 1]
+        );
+    }
+
+    public String get_value(int code) {
+        int start = this.offsets[code];
+        int length = this.offsets[code + 1] - start;
+        return new String(
+            this.values, start, length, StandardCharsets.UTF_8
+        );
+    }
+
+    public int size() {
+        return this.num_values;
+    }
+
+    byte[] value_bytes() {
+        // values of the dictionary back to back (not copied)
+        return this.values;
+    }
+
+    int value_offset(int code) {
+        // start of the value with code in value_bytes()
+        return this.offsets[code];
+    }
+
+    public void trim_to_size() {
+        /*
+        release the unused capacity of the dictionary and its lookup
+        table once all values have been added. The lookup table is
+        rebuilt the next time a value is encoded or looked up
+        */
+        this.values = Arrays.copyOf(
+            this.values, this.offsets[this.num_values]
+        );
+        this.offsets = Arrays.copyOf(this.offsets, this.num_values + 1);
+        this.table = null;
+    }
+
+    public long memory_bytes() {
+        // rough estimate of the heap used by this dictionary
+        long table_bytes = (this.table == null ? 0 : 4L * this.table.length);
+        return this.values.length + 4L * this.offsets.length + table_bytes;
+    }
+
+    private int add_value(byte[] buffer, int start, int end) {
+        int length = end - start;
+        int value_start = this.offsets[this.num_values];
+
+        if (value_start + length > this.values.length) {
+            int new_length = Math.max(
+                this.values.length * 2, value_start + length
+            );
+            this.values = Arrays.copyOf(this.values, new_length);
+        }
+        if (this.num_values + 2 > this.offsets.length) {
+            this.offsets = Arrays.copyOf(
+                this.offsets, this.offsets.length * 2
+            );
+        }
+
+        System.arraycopy(buffer, start, this.values, value_start, length);
+        this.offsets[this.num_values + 1] = value_start + length;
+        return this.num_values++;
+    }
+
+    private boolean value_equals(
+        int code, byte[] buffer, int start, int end
+    ) {
+        int value_start = this.offsets[code];
+        int value_end = this.offsets[code + 1];
+        return Arrays.equals(
+            this.values, value_start, value_end, buffer, start, end
+        );
+    }
+
+    private int[] get_table() {
+        if (this.table == null) {
+            int capacity = INITIAL_CAPACITY * 2;
+            while (this.num_values * 4 > capacity * 3) { capacity *= 2; }
+            this.table = this.build_table(capacity);
+        }
+        return this.table;
+    }
+
+    private int[] build_table(int capacity) {
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+
+        for (int code=0; code<this.num_values; code++) {
+            int slot = hash(
+                this.values, this.offsets[code], this.offsets[code + 1]
+            ) & mask;
+            while (table[slot] != 0) { slot = (slot + 1) & mask; }
+            table[slot] = code + 1;
+        }
+        return table;
+    }
+
+    private static int hash(byte[] buffer, int start, int end) {
+        int hash = 1;
+        for (int k=start; k<end; k++) {
+            hash = 31 * hash + buffer[k];
+        }
+        // spread the higher bits into the lower bits used for slots
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,192 @@
+import java.util.*;
+
+public class ColumnarCsvFile {
+    /*
+    column oriented version of CsvFile, where every column has its own
+    dictionary of distinct values (see ColumnDictionary) and each cell
+    is stored as the int code of its value in an int array per column.
+    Low cardinality columns (like Currency and Type) then only cost
+    4 bytes per row instead of a String object per row, and cells can
+    be compared by comparing their codes instead of their strings
+    */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final String[] headers;
+    private final ColumnDictionary[] dictionaries;
+    // codes[column][row] is the code of the value at (row, column)
+    private int[][] codes;
+    private int num_rows = 0;
+
+    public ColumnarCsvFile(String[] headers) {
+        assert RecordChecker.is_unique_arr(headers);
+        this.headers = headers.clone();
+        this.dictionaries = new ColumnDictionary[headers.length];
+        this.codes = new int[headers.length][INITIAL_CAPACITY];
+
+        for (int k=0; k<headers.length; k++) {
+            this.dictionaries[k] = new ColumnDictionary();
+        }
+    }
+
+    ColumnarCsvFile(
+        String[] headers, ColumnDictionary[] dictionaries, int[][] codes,
+        int num_rows
+    ) {
+        // file made from already encoded columns (see CsvSnapshot)
+        assert dictionaries.length == headers.length;
+        assert codes.length == headers.length;
+        this.headers = headers.clone();
+        this.dictionaries = dictionaries;
+        this.codes = codes;
+        this.num_rows = num_rows;
+    }
+
+    public static ColumnarCsvFile from_csv_file(CsvFile csv_file) {
+        ColumnarCsvFile columnar_file = new ColumnarCsvFile(
+            csv_file.get_headers()
+        );
+        for (int k=0; k<csv_file.num_rows(); k++) {
+            columnar_file.add_row(csv_file.get_row(k));
+        }
+
+        columnar_file.trim_to_size();
+        return columnar_file;
+    }
+
+    public void add_row(String[] row) {
+        assert row.length == this.headers.length;
+        this.ensure_capacity(this.num_rows + 1);
+        for (int k=0; k<row.length; k++) {
+            this.codes[k][this.num_rows] = this.dictionaries[k].encode(row[k]);
+        }
+        this.num_rows++;
+    }
+
+    public void add_row(MappedCsvReader reader) {
+        /*
+        add the current line of the reader as a row, encoding the
+        cell bytes directly without building Strings for them
+        */
+        assert reader.num_cells() == this.headers.length;
+        this.ensure_capacity(this.num_rows + 1);
+        for (int k=0; k<this.headers.length; k++) {
+            this.codes[k][this.num_rows] = reader.encode_cell(
+                k, this.dictionaries[k]
+            );
+        }
+        this.num_rows++;
+    }
+
+    public void trim_to_size() {
+        /*
+        release unused capacity once all rows have been added
+        (rows can still be added afterwards if need be)
+        */
+        for (int k=0; k<this.headers.length; k++) {
+            this.codes[k] = Arrays.copyOf(this.codes[k], this.num_rows);
+            this.dictionaries[k].trim_to_size();
+        }
+    }
+
+    private void ensure_capacity(int capacity) {
+        if (this.headers.length == 0) { return; }
+        int current_capacity = this.codes[0].length;
+        if (capacity <= current_capacity) { return; }
+
+        int new_capacity = Math.max(capacity, current_capacity * 2);
+        for (int k=0; k<this.headers.length; k++) {
+            this.codes[k] = Arrays.copyOf(this.codes[k], new_capacity);
+        }
+    }
+
+    public int get_code(int row, int column) {
+        return this.codes[column][row];
+    }
+
+    public String get_value(int row, int column) {
+        return this.dictionaries[column].get_value(this.codes[column][row]);
+    }
+
+    public ColumnDictionary get_dictionary(int column) {
+        return this.dictionaries[column];
+    }
+
+    public String[] get_row(int row) {
+        String[] values = new String[this.headers.length];
+        for (int k=0; k<values.length; k++) {
+            values[k] = this.get_value(row, k);
+        }
+        return values;
+    }
+
+    public CsvFile to_csv_file() {
+        /*
+        decode the file back into a CsvFile. Each distinct value of a
+        column is only decoded once, and every row with that value
+        shares the same String for it
+        */
+        String[][] values = new String[this.headers.length][];
+        for (int k=0; k<this.headers.length; k++) {
+            ColumnDictionary dictionary = this.dictionaries[k];
+            values[k] = new String[dictionary.size()];
+            for (int code=0; code<dictionary.size(); code++) {
+                values[k][code] = dictionary.get_value(code);
+            }
+        }
+
+        ArrayList<String[]> raw_data = new ArrayList<>(this.num_rows + 1);
+        raw_data.add(this.get_headers());
+        for (int row=0; row<this.num_rows; row++) {
+            String[] row_values = new String[this.headers.length];
+            for (int k=0; k<row_values.length; k++) {
+                row_values[k] = values[k][this.codes[k][row]];
+            }
+            raw_data.add(row_values);
+        }
+        return new CsvFile(raw_data);
+    }
+
+    public int get_column_index(String column_name) {
+        for (int k=0; k<this.headers.length; k++) {
+            if (this.headers[k].equals(column_name)) { return k; }
+        }
+        return -1;
+    }
+
+    public int[] get_column_indexes(String[] columns) {
+        int[] column_indexes = new int[columns.length];
+        for (int k=0; k<columns.length; k++) {
+            column_indexes[k] = this.get_column_index(columns[k]);
+        }
+        return column_indexes;
+    }
+
+    public boolean has_columns(String[] columns) {
+        for (int column_index : this.get_column_indexes(columns)) {
+            if (column_index == -1) { return false; }
+        }
+        return true;
+    }
+
+    public long memory_bytes() {
+        // rough estimate of the heap used by the cells of the file
+        long total = 0;
+        for (int k=0; k<this.headers.length; k++) {
+            total += 4L * this.codes[k].length;
+            total += this.dictionaries[k].memory_bytes();
+        }
+        return total;
+    }
+
+    public String[] get_headers() {
+        return this.headers.clone();
+    }
+
+    public int num_rows() {
+        return this.num_rows;
+    }
+
+    public int num_columns() {
+        return this.headers.length;
+    }
+}
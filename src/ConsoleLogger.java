@@ -0,0 +1,25 @@
+import java.io.PrintStream;
+
+public class ConsoleLogger implements CheckerLogger {
+    /*
+    logger that prints every message on its own line of a PrintStream
+    (System.out by default) as is, followed by the stack trace of its
+    exception if it has one. This is what the command line uses, so
+    its output is the same as when the checker printed messages itself
+    */
+    private final PrintStream out;
+
+    public ConsoleLogger() {
+        this(System.out);
+    }
+
+    public ConsoleLogger(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void log(LogLevel level, String message, Throwable error) {
+        this.out.println(message);
+        if (error != null) { error.printStackTrace(); }
+    }
+}
@@ -0,0 +1,84 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+public class CsvCursor implements AutoCloseable {
+    /*
+    forward-only reader over the rows of a csv file. Unlike
+    RecordChecker.read_csv this only ever holds the current row in
+    memory, so it can be used to go through files that are too large
+    to be loaded into a CsvFile. Rows are split and validated the
+    same way read_csv does it
+    */
+    private final MappedCsvReader reader;
+    private final String[] headers;
+    private long rows_read = 0;
+
+    public CsvCursor(
+        String raw_filename
+    ) throws IOException, BadFileFormat {
+        String filename = raw_filename.trim();
+        this.reader = new MappedCsvReader(filename);
+
+        if (!this.reader.next_line()) {
+            this.reader.close();
+            throw new BadFileFormat(RecordChecker.NO_HEADERS);
+        }
+
+        this.headers = this.reader.get_cells();
+        if (this.headers.length < 1) {
+            // We need to have one column at the least
+            this.reader.close();
+            throw new BadFileFormat(RecordChecker.INSUFFICIENT_COLUMNS);
+        } else if (!RecordChecker.is_unique_arr(this.headers)) {
+            this.reader.close();
+            throw new BadFileFormat(RecordChecker.DUP_COL_ERR);
+        }
+
+        if (CheckerLog.is_enabled(LogLevel.INFO)) {
+            CheckerLog.log(LogLevel.INFO, "HEADERS");
+            CheckerLog.log(LogLevel.INFO, Arrays.toString(this.headers));
+        }
+    }
+
+    public String[] next_row() throws IOException, BadFileFormat {
+        /*
+        return the next row of the file, or null if
+        we've already gone through every row in the file
+        */
+        if (!this.next_raw_row()) { return null; }
+        return this.reader.get_cells();
+    }
+
+    public boolean next_raw_row() throws IOException, BadFileFormat {
+        /*
+        move on to the next row of the file without building Strings
+        for its values (they can be read off get_reader() instead),
+        returns false if we've already gone through every row
+        */
+        if (!this.reader.next_line()) { return false; }
+        if (this.reader.num_cells() != this.headers.length) {
+            // this row has more columns than were in the headers row
+            throw new BadFileFormat(RecordChecker.COL_MISMATCH);
+        }
+
+        this.rows_read++;
+        return true;
+    }
+
+    public MappedCsvReader get_reader() {
+        return this.reader;
+    }
+
+    public String[] get_headers() {
+        return this.headers.clone();
+    }
+
+    public long rows_read() {
+        return this.rows_read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.reader.close();
+    }
+}
@@ -1,6 +1,7 @@
 import java.io.FileWriter;
 import java.io.IOException;
 import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 public class CsvFile {
@@ -29,6 +30,11 @@ public class CsvFile {
         return new_file;
     }
 
+    public ReorderedCsvFile reorder_view(String[] new_columns) {
+        // reorder the columns without copying the rows of the file
+        return new ReorderedCsvFile(this, new_columns);
+    }
+
     @Override
     public CsvFile clone() {
         ArrayList<String[]> new_rows = new ArrayList<>();
@@ -98,7 +104,8 @@ public class CsvFile {
     }
 
     public void export_csv(String export_path) throws IOException {
-        FileWriter writer = new FileWriter(export_path);
+        // UTF-8, the same as MismatchWriter and the csv readers
+        FileWriter writer = new FileWriter(export_path, StandardCharsets.UTF_8);
         for (int k=0; k<this.raw_data.size(); k++) {
             String[] row = this.raw_data.get(k);
             String line = String.join(",", row);
@@ -155,43 +162,39 @@ public class CsvFile {
         return column_indexes;
     }
 
+    public ProjectionPlan get_projection_plan(String[] columns) {
+        /*
+        work out the positions of the columns passed in (and of all
+        the other columns) once, so that they can be picked out of
+        every row without looking up the columns by name each time
+        */
+        return new ProjectionPlan(this.raw_data.get(0), columns);
+    }
+
     public String[] select_row_columns(int index, String[] columns) {
         // get columns values corresponding to the columns passed in
         // for the row at index
-        int[] column_indexes = this.get_column_indexes(columns);
-        String[] column_values = new String[columns.length];
-        String[] row = this.get_row(index);
-
-        for (int k=0; k<column_values.length; k++) {
-            column_values[k] = row[column_indexes[k]];
-        }
+        return this.select_row_columns(
+            index, this.get_projection_plan(columns)
+        );
+    }
 
-        assert column_indexes.length == column_values.length;
-        return column_values;
+    public String[] select_row_columns(int index, ProjectionPlan plan) {
+        assert index >= 0;
+        return plan.select(this.raw_data.get(index + 1));
     }
 
     public String[] exclude_row_columns(int index, String[] columns) {
         // get columns values for columns whose names are NOT the
         // names of the columns passed in, for the row at index
-        String[] row = this.get_row(index);
-        int[] int_indexes = this.get_column_indexes(columns);
-        Integer[] integer_indexes = Arrays.stream(int_indexes)
-            .boxed().toArray(Integer[]::new);
-
-        List<Integer> indexes = Arrays.asList(integer_indexes);
-        ArrayList<String> excluded_values = new ArrayList<>();
-
-        for (int k=0; k<this.num_columns(); k++) {
-            if (indexes.contains(k)) { continue; }
-            excluded_values.add(row[k]);
-        }
+        return this.exclude_row_columns(
+            index, this.get_projection_plan(columns)
+        );
+    }
 
-        // dump the arraylist back into an array
-        String[] exclude_arr = new String[excluded_values.size()];
-        for (int k=0; k<excluded_values.size(); k++) {
-            exclude_arr[k] = excluded_values.get(k);
-        }
-        return exclude_arr;
+    public String[] exclude_row_columns(int index, ProjectionPlan plan) {
+        assert index >= 0;
+        return plan.exclude(this.raw_data.get(index + 1));
     }
 
     public ArrayList<String[]> search_row_matches(
@@ -228,14 +231,13 @@ public class CsvFile {
         */
         assert columns.length == column_values.length;
         ArrayList<Pair<String[], String[]>> matches = new ArrayList<>();
+        ProjectionPlan plan = this.get_projection_plan(columns);
 
-        for (int k=0; k<this.num_rows(); k++) {
-            String[] row_column_values = this.select_row_columns(k, columns);
-            String[] row_exclude_values = this.exclude_row_columns(k, columns);
-            String[] row = this.get_row(k);
-
-            if (Arrays.equals(column_values, row_column_values)) {
-                matches.add(new Pair<>(row, row_exclude_values));
+        for (int k=1; k<this.raw_data.size(); k++) {
+            String[] row = this.raw_data.get(k);
+            // only copy values out of the rows that match
+            if (plan.key_equals(row, column_values)) {
+                matches.add(new Pair<>(row.clone(), plan.exclude(row)));
             }
         }
 
@@ -249,17 +251,16 @@ public class CsvFile {
         return rows in this csv file that have column values in
         columns that don't have the same values are those in compare_values
         */
-        ArrayList<Pair<String[], String[]>> matches = this.search_matches(
-            columns, column_values
-        );
-
+        ProjectionPlan plan = this.get_projection_plan(columns);
         ArrayList<String[]> rows = new ArrayList<>();
-        for (Pair<String[], String[]> match : matches) {
-            String[] row = match.first;
-            String[] compare_row_values = match.second;
 
-            if (!Arrays.equals(compare_values, compare_row_values)) {
-                rows.add(row);
+        for (int k=1; k<this.raw_data.size(); k++) {
+            String[] row = this.raw_data.get(k);
+            // values are compared in place, only mismatching
+            // rows are copied out of the file
+            if (!plan.key_equals(row, column_values)) { continue; }
+            if (!plan.values_equal(row, compare_values)) {
+                rows.add(row.clone());
             }
         }
 
@@ -278,6 +279,38 @@ public class CsvFile {
         }
     }
 
+    public long[] hash_row_values(String[] combination) {
+        /*
+        64 bit hash of the values of every row that aren't in the
+        combination columns (see KeyHasher). Values are hashed in order
+        of their column names, so rows of files with the same columns in
+        a different order get the same hash when their values are equal.
+        Rows with different hashes never have equal values, while rows
+        with the same hash still have to be compared to be sure
+        */
+        int[] value_indexes = RowFingerprints.get_value_indexes(
+            this.get_headers(), combination
+        );
+        long[] hashes = new long[this.num_rows()];
+        for (int k=0; k<hashes.length; k++) {
+            hashes[k] = KeyHasher.hash_cells(this.peek_row(k), value_indexes);
+        }
+        return hashes;
+    }
+
+    public long memory_bytes() {
+        /*
+        rough estimate of the heap used by the rows of the file
+        (assuming compressed references and single byte Strings)
+        */
+        long total = 0;
+        for (String[] row : this.raw_data) {
+            total += 20 + 4L * row.length;
+            for (String value : row) { total += 40 + value.length(); }
+        }
+        return total;
+    }
+
     public String[] get_headers() {
         return this.raw_data.get(0).clone();
     }
@@ -295,4 +328,20 @@ public class CsvFile {
         assert index >= 0;
         return this.raw_data.get(index + 1).clone();
     }
+
+    public String get_cell(int index, int column) {
+        // value of a single cell, without copying its row
+        assert index >= 0;
+        return this.raw_data.get(index + 1)[column];
+    }
+
+    String[] peek_row(int index) {
+        /*
+        the row at index without copying it, for use by the diff
+        methods that only read rows. The returned array is the
+        file's own storage and must never be modified
+        */
+        assert index >= 0;
+        return this.raw_data.get(index + 1);
+    }
 }
@@ -0,0 +1,287 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+public class CsvSnapshot {
+    /*
+    binary snapshot of a parsed csv file, saved next to the csv file
+    (as <file>.snap) so that the next read of the same file can load the
+    already split and validated rows instead of parsing the file again.
+
+    A snapshot is a ColumnarCsvFile written out column by column:
+        header block: magic, version, size, modification time and
+            CRC32C checksum of the csv file, the headers and row count
+        for each column: its dictionary (value offsets followed by the
+            UTF-8 bytes of the values), then the code of every row,
+            stored in 1, 2 or 4 bytes each depending on the number
+            of distinct values in the column
+
+    Snapshots are loaded by memory mapping the snapshot file and bulk
+    copying each section into arrays, and are ignored (then rewritten)
+    if the size, modification time or checksum of the csv file differ
+    from the ones it was made from. The checksum means every load still
+    reads the whole csv file once (a fast sequential read, but not a
+    free one), since size and modification time alone can't tell a
+    file that was rewritten within the same millisecond apart.
+    Snapshots larger than 2GB aren't written, as they can't be mapped
+    in one piece
+    */
+    static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final int MAGIC = 0x43534e50;
+    private static final int VERSION = 1;
+
+    public static CsvFile read_csv(
+        String raw_filename
+    ) throws IOException, BadFileFormat {
+        /*
+        same as RecordChecker.read_csv, but loads the
+        rows from the snapshot of the file if it's up to date
+        */
+        String filename = raw_filename.trim();
+        Path source = Path.of(filename);
+        // identity of the file is taken before reading it, so a file
+        // changed while being read never matches its snapshot
+        long size = Files.size(source);
+        long modified = Files.getLastModifiedTime(source).toMillis();
+
+        ColumnarCsvFile columnar_file = load_snapshot(filename, size, modified);
+        if (columnar_file != null) { return columnar_file.to_csv_file(); }
+
+        CsvFile csv_file = RecordChecker.read_csv(filename);
+        save_snapshot(
+            filename, ColumnarCsvFile.from_csv_file(csv_file), size, modified
+        );
+        return csv_file;
+    }
+
+    public static ColumnarCsvFile read_columnar_csv(
+        String raw_filename
+    ) throws IOException, BadFileFormat {
+        // same as RecordChecker.read_columnar_csv, but with snapshots
+        String filename = raw_filename.trim();
+        Path source = Path.of(filename);
+        long size = Files.size(source);
+        long modified = Files.getLastModifiedTime(source).toMillis();
+
+        ColumnarCsvFile csv_file = load_snapshot(filename, size, modified);
+        if (csv_file != null) { return csv_file; }
+
+        csv_file = RecordChecker.read_columnar_csv(filename);
+        save_snapshot(filename, csv_file, size, modified);
+        return csv_file;
+    }
+
+    private static ColumnarCsvFile load_snapshot(
+        String filename, long size, long modified
+    ) throws IOException {
+        ColumnarCsvFile csv_file = load(
+            Path.of(filename + SNAPSHOT_SUFFIX), Path.of(filename),
+            size, modified
+        );
+        if (csv_file != null && CheckerLog.is_enabled(LogLevel.INFO)) {
+            CheckerLog.log(LogLevel.INFO, "HEADERS");
+            CheckerLog.log(
+                LogLevel.INFO, Arrays.toString(csv_file.get_headers())
+            );
+        }
+        return csv_file;
+    }
+
+    private static void save_snapshot(
+        String filename, ColumnarCsvFile csv_file, long size, long modified
+    ) throws IOException {
+        Path snapshot = Path.of(filename + SNAPSHOT_SUFFIX);
+        try {
+            write(
+                csv_file, snapshot, size, modified,
+                checksum(Path.of(filename))
+            );
+        } catch (IOException e) {
+            // the snapshot is only a cache, so
+            // not being able to write it isn't an error
+            Files.deleteIfExists(Path.of(snapshot + ".tmp"));
+        }
+    }
+
+    static long checksum(Path source) throws IOException {
+        // CRC32C of the contents of a file
+        CRC32C checksum = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+
+        try (FileChannel channel = FileChannel.open(source)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                checksum.update(buffer);
+                buffer.clear();
+            }
+        }
+        return checksum.getValue();
+    }
+
+    static void write(
+        ColumnarCsvFile csv_file, Path snapshot, long size, long modified,
+        long checksum
+    ) throws IOException {
+        // write to a temporary file first so that a reader
+        // never sees a half written snapshot
+        Path temp_path = Path.of(snapshot + ".tmp");
+        int num_rows = csv_file.num_rows();
+
+        try (DataOutputStream stream = new DataOutputStream(
+            new BufferedOutputStream(
+                Files.newOutputStream(temp_path), 1 << 16
+            )
+        )) {
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+            stream.writeLong(size);
+            stream.writeLong(modified);
+            stream.writeLong(checksum);
+            stream.writeInt(csv_file.num_columns());
+            stream.writeInt(num_rows);
+            for (String header : csv_file.get_headers()) {
+                write_bytes(stream, header.getBytes(StandardCharsets.UTF_8));
+            }
+
+            for (int k=0; k<csv_file.num_columns(); k++) {
+                ColumnDictionary dictionary = csv_file.get_dictionary(k);
+                int num_values = dictionary.size();
+                stream.writeInt(num_values);
+                for (int code=0; code<=num_values; code++) {
+                    stream.writeInt(dictionary.value_offset(code));
+                }
+                stream.write(
+                    dictionary.value_bytes(), 0,
+                    dictionary.value_offset(num_values)
+                );
+
+                int code_width = get_code_width(num_values);
+                stream.writeByte(code_width);
+                for (int row=0; row<num_rows; row++) {
+                    int code = csv_file.get_code(row, k);
+                    if (code_width == 1) {
+                        stream.writeByte(code);
+                    } else if (code_width == 2) {
+                        stream.writeShort(code);
+                    } else {
+                        stream.writeInt(code);
+                    }
+                }
+            }
+        }
+
+        if (Files.size(temp_path) > Integer.MAX_VALUE) {
+            Files.delete(temp_path);
+            return;
+        }
+        Files.move(
+            temp_path, snapshot, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE
+        );
+    }
+
+    private static void write_bytes(
+        DataOutputStream stream, byte[] value
+    ) throws IOException {
+        stream.writeInt(value.length);
+        stream.write(value);
+    }
+
+    private static int get_code_width(int num_values) {
+        // number of bytes needed to store the codes of a column
+        if (num_values <= (1 << 8)) {
+            return 1;
+        } else if (num_values <= (1 << 16)) {
+            return 2;
+        }
+        return 4;
+    }
+
+    static ColumnarCsvFile load(
+        Path snapshot, Path source, long size, long modified
+    ) throws IOException {
+        /*
+        load the csv file saved in a snapshot, or return null if there
+        is no snapshot, it can't be read, or it was made from a
+        different version of the source csv file
+        */
+        if (!Files.exists(snapshot)) { return null; }
+
+        try (FileChannel channel = FileChannel.open(snapshot)) {
+            if (channel.size() > Integer.MAX_VALUE) { return null; }
+            ByteBuffer buffer = channel.map(
+                FileChannel.MapMode.READ_ONLY, 0, channel.size()
+            );
+
+            if (buffer.getInt() != MAGIC) { return null; }
+            if (buffer.getInt() != VERSION) { return null; }
+            if (buffer.getLong() != size) { return null; }
+            if (buffer.getLong() != modified) { return null; }
+            // only checksum the source once everything else matches
+            if (buffer.getLong() != checksum(source)) { return null; }
+
+            int num_columns = buffer.getInt();
+            int num_rows = buffer.getInt();
+            String[] headers = new String[num_columns];
+            for (int k=0; k<num_columns; k++) {
+                byte[] header = new byte[buffer.getInt()];
+                buffer.get(header);
+                headers[k] = new String(header, StandardCharsets.UTF_8);
+            }
+
+            ColumnDictionary[] dictionaries = new ColumnDictionary[num_columns];
+            int[][] codes = new int[num_columns][];
+            for (int k=0; k<num_columns; k++) {
+                dictionaries[k] = read_dictionary(buffer);
+                codes[k] = read_codes(buffer, num_rows);
+            }
+
+            return new ColumnarCsvFile(headers, dictionaries, codes, num_rows);
+        } catch (
+            BufferUnderflowException | IndexOutOfBoundsException |
+            IllegalArgumentException | NegativeArraySizeException e
+        ) {
+            // snapshot was cut short or is corrupted
+            return null;
+        }
+    }
+
+    private static ColumnDictionary read_dictionary(ByteBuffer buffer) {
+        int num_values = buffer.getInt();
+        int[] offsets = new int[num_values + 1];
+        buffer.asIntBuffer().get(offsets);
+        buffer.position(buffer.position() + 4 * offsets.length);
+
+        byte[] values = new byte[offsets[num_values]];
+        buffer.get(values);
+        return new ColumnDictionary(values, offsets, num_values);
+    }
+
+    private static int[] read_codes(ByteBuffer buffer, int num_rows) {
+        int code_width = buffer.get();
+        if (code_width != 1 && code_width != 2 && code_width != 4) {
+            throw new IllegalArgumentException("BAD CODE WIDTH");
+        }
+        int[] codes = new int[num_rows];
+
+        if (code_width == 4) {
+            buffer.asIntBuffer().get(codes);
+        } else if (code_width == 2) {
+            ShortBuffer shorts = buffer.asShortBuffer();
+            for (int row=0; row<num_rows; row++) {
+                codes[row] = shorts.get(row) & 0xffff;
+            }
+        } else {
+            for (int row=0; row<num_rows; row++) {
+                codes[row] = buffer.get(buffer.position() + row) & 0xff;
+            }
+        }
+
+        buffer.position(buffer.position() + code_width * num_rows);
+        return codes;
+    }
+}
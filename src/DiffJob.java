@@ -0,0 +1,70 @@
+import java.util.concurrent.CountDownLatch;
+
+public class DiffJob {
+    /*
+    a single reconciliation of two files submitted to a DiffJobRunner,
+    used to follow its status and get its result once it's done.
+    export_path is only set if the job succeeded, and error is only
+    set if it failed
+    */
+    public final int id;
+    public final String filename1;
+    public final String filename2;
+    public final String raw_combination;
+
+    private final RunMetrics metrics = new RunMetrics();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile JobStatus status = JobStatus.QUEUED;
+    private volatile String export_path = null;
+    private volatile Throwable error = null;
+
+    DiffJob(
+        int id, String filename1, String filename2, String raw_combination
+    ) {
+        this.id = id;
+        this.filename1 = filename1;
+        this.filename2 = filename2;
+        this.raw_combination = raw_combination;
+    }
+
+    void set_status(JobStatus status) {
+        this.status = status;
+    }
+
+    void succeed(String export_path) {
+        this.export_path = export_path;
+        this.status = JobStatus.SUCCEEDED;
+        this.done.countDown();
+    }
+
+    void fail(Throwable error) {
+        this.error = error;
+        this.status = JobStatus.FAILED;
+        this.done.countDown();
+    }
+
+    public JobStatus get_status() {
+        return this.status;
+    }
+
+    public boolean is_done() {
+        return this.done.getCount() == 0;
+    }
+
+    public void await_done() throws InterruptedException {
+        this.done.await();
+    }
+
+    public String get_export_path() {
+        return this.export_path;
+    }
+
+    public Throwable get_error() {
+        return this.error;
+    }
+
+    public RunMetrics get_metrics() {
+        // measurements of every stage of the job (only read once done)
+        return this.metrics;
+    }
+}
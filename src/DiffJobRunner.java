@@ -0,0 +1,196 @@
+import java.io.*;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DiffJobRunner implements AutoCloseable {
+    /*
+    runs many reconciliations (see DiffJob) at once, each on its own
+    thread. Every job reads its files, diffs them and exports the
+    mismatches to a new file in the output directory the same way
+    RecordChecker.generate_diffs does.
+
+    Jobs run on virtual threads when the JVM has them (Java 21 and up),
+    so jobs waiting on file i/o don't tie up a platform thread each.
+    Otherwise they run on a pool of max_active_jobs platform threads.
+    Either way:
+        1. at most max_active_jobs jobs are reading, diffing or
+        exporting at once, which bounds the memory held by parsed files
+        2. at most cpu_permits jobs are diffing at once (the stages that
+        only use the cpu), so the cores are never oversubscribed no
+        matter how many jobs are waiting on i/o. cpu_permits is the
+        number of cores by default
+    */
+    private final Path output_dir;
+    private final int cpu_permits;
+    private final Semaphore cpu_semaphore;
+    private final Semaphore active_semaphore;
+    private final ExecutorService executor;
+    private final boolean uses_virtual_threads;
+    private final ArrayList<DiffJob> jobs = new ArrayList<>();
+    // number of jobs diffing right now, and the most there have been
+    private final AtomicInteger num_diffing = new AtomicInteger();
+    private final AtomicInteger peak_diffing = new AtomicInteger();
+
+    public DiffJobRunner(Path output_dir) {
+        this(
+            output_dir, Runtime.getRuntime().availableProcessors(),
+            4 * Runtime.getRuntime().availableProcessors()
+        );
+    }
+
+    public DiffJobRunner(
+        Path output_dir, int cpu_permits, int max_active_jobs
+    ) {
+        if (cpu_permits < 1) throw new IllegalArgumentException();
+        if (max_active_jobs < 1) throw new IllegalArgumentException();
+        this.output_dir = output_dir;
+        this.cpu_permits = cpu_permits;
+        this.cpu_semaphore = new Semaphore(cpu_permits, true);
+        this.active_semaphore = new Semaphore(max_active_jobs, true);
+
+        ExecutorService executor = make_virtual_executor();
+        this.uses_virtual_threads = executor != null;
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(max_active_jobs);
+        }
+        this.executor = executor;
+    }
+
+    private static ExecutorService make_virtual_executor() {
+        /*
+        executor with a new virtual thread per job, or null if the JVM
+        doesn't have virtual threads. Looked up by reflection so that
+        the checker still builds and runs on older versions of Java
+        */
+        try {
+            Method method = Executors.class.getMethod(
+                "newVirtualThreadPerTaskExecutor"
+            );
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    public DiffJob submit(
+        String filename1, String filename2, String raw_combination
+    ) {
+        /*
+        queue up a reconciliation of the two files. The job is only
+        kept track of once it has been handed to a thread, so a job
+        rejected after close never shows up as queued forever
+        */
+        synchronized (this.jobs) {
+            DiffJob job = new DiffJob(
+                this.jobs.size(), filename1, filename2, raw_combination
+            );
+            this.executor.execute(() -> this.run_job(job));
+            this.jobs.add(job);
+            return job;
+        }
+    }
+
+    private void run_job(DiffJob job) {
+        RunMetrics metrics = job.get_metrics();
+        boolean is_active = false;
+
+        try {
+            this.active_semaphore.acquire();
+            is_active = true;
+
+            job.set_status(JobStatus.READING);
+            String[] combination = RecordChecker.parse_combination(
+                job.raw_combination
+            );
+            Pair<CsvFile, CsvFile> csv_files = RecordChecker.read_files(
+                job.filename1, job.filename2, metrics
+            );
+
+            job.set_status(JobStatus.WAITING_FOR_CPU);
+            ArrayList<String[]> all_mismatch_rows;
+            this.cpu_semaphore.acquire();
+            try {
+                job.set_status(JobStatus.DIFFING);
+                this.peak_diffing.accumulateAndGet(
+                    this.num_diffing.incrementAndGet(), Math::max
+                );
+                all_mismatch_rows = RecordChecker.diff_parsed_files(
+                    csv_files.first, csv_files.second, combination, metrics
+                );
+            } finally {
+                this.num_diffing.decrementAndGet();
+                this.cpu_semaphore.release();
+            }
+
+            job.set_status(JobStatus.EXPORTING);
+            String export_path = RecordChecker.export_mismatches(
+                all_mismatch_rows,
+                RecordChecker.make_export_path(this.output_dir), metrics
+            );
+            job.succeed(export_path);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.fail(new InterruptedIOException("JOB INTERRUPTED"));
+        } catch (Throwable e) {
+            // errors (like running out of memory) fail the job too,
+            // otherwise anything waiting on it would wait forever
+            job.fail(e);
+        } finally {
+            if (is_active) { this.active_semaphore.release(); }
+        }
+    }
+
+    public List<DiffJob> get_jobs() {
+        // every job submitted so far, in the order they were submitted
+        synchronized (this.jobs) {
+            return new ArrayList<>(this.jobs);
+        }
+    }
+
+    public Map<JobStatus, Integer> count_statuses() {
+        // number of submitted jobs with each status
+        EnumMap<JobStatus, Integer> counts = new EnumMap<>(JobStatus.class);
+        for (JobStatus status : JobStatus.values()) {
+            counts.put(status, 0);
+        }
+        for (DiffJob job : this.get_jobs()) {
+            counts.merge(job.get_status(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    public void await_all() throws InterruptedException {
+        // wait for every job submitted so far to be done
+        for (DiffJob job : this.get_jobs()) {
+            job.await_done();
+        }
+    }
+
+    public boolean uses_virtual_threads() {
+        return this.uses_virtual_threads;
+    }
+
+    public int get_cpu_permits() {
+        return this.cpu_permits;
+    }
+
+    int peak_diffing() {
+        // most jobs that have been diffing at the same time
+        return this.peak_diffing.get();
+    }
+
+    @Override
+    public void close() throws InterruptedIOException {
+        // wait for every submitted job to finish, then stop the threads
+        this.executor.shutdown();
+        try {
+            while (!this.executor.awaitTermination(1, TimeUnit.MINUTES)) {}
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("RUNNER CLOSE INTERRUPTED");
+        }
+    }
+}
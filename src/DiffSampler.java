@@ -0,0 +1,132 @@
+import java.io.*;
+import java.util.*;
+
+public class DiffSampler {
+    /*
+    quick estimate of how much two files differ, for deciding whether a
+    full diff is worth running. Rows are sampled by the 64 bit hash of
+    their combination values (the same KeyHasher hash KeyIndex uses), so
+    a row is in the sample exactly when every row with the same
+    combination values in either file is in it too: the sample of file 1
+    is diffed against the sample of file 2 just like the full files
+    would be, and the same sample is taken on every run.
+
+    Both files are scanned once through their raw bytes, and Strings
+    are only made for the cells of the rows in the sample. When rows
+    share combination values, they're sampled together in groups, so
+    the bounds of the estimates are somewhat too narrow
+    */
+    static final double DEFAULT_SAMPLE_RATE = 0.01;
+
+    private DiffSampler() {}
+
+    public static boolean is_sampled(long key_hash, double sample_rate) {
+        /*
+        whether the combination values with key_hash are in the sample,
+        by mapping the top 53 bits of the hash onto [0, 1)
+        */
+        return (key_hash >>> 11) * 0x1.0p-53 < sample_rate;
+    }
+
+    public static SampleEstimate estimate(
+        String filename1, String filename2, String[] combination,
+        double sample_rate
+    ) throws IOException, BadFileFormat, BadCombination, FilesMismatch {
+        if (!(sample_rate > 0 && sample_rate <= 1)) {
+            throw new IllegalArgumentException();
+        }
+
+        try (
+            CsvCursor cursor1 = new CsvCursor(filename1);
+            CsvCursor cursor2 = new CsvCursor(filename2)
+        ) {
+            // headers are checked the same way a full diff checks them
+            ArrayList<String[]> rows1 = new ArrayList<>();
+            ArrayList<String[]> rows2 = new ArrayList<>();
+            rows1.add(cursor1.get_headers());
+            rows2.add(cursor2.get_headers());
+            RecordChecker.check_comparable(
+                new CsvFile(rows1), new CsvFile(rows2), combination
+            );
+
+            CsvFile sample1 = new CsvFile(
+                sample_rows(cursor1, combination, sample_rate)
+            );
+            CsvFile sample2 = new CsvFile(
+                sample_rows(cursor2, combination, sample_rate)
+            );
+            return diff_samples(
+                sample1, sample2, combination, sample_rate,
+                cursor1.rows_read(), cursor2.rows_read()
+            );
+        }
+    }
+
+    private static ArrayList<String[]> sample_rows(
+        CsvCursor cursor, String[] combination, double sample_rate
+    ) throws IOException, BadFileFormat, BadCombination {
+        // return the headers of the file followed by the rows in the sample
+        ArrayList<String[]> rows = new ArrayList<>();
+        rows.add(cursor.get_headers());
+
+        int[] key_indexes = RowFingerprints.get_key_indexes(
+            cursor.get_headers(), combination
+        );
+        MappedCsvReader reader = cursor.get_reader();
+        while (cursor.next_raw_row()) {
+            long key_hash = KeyHasher.hash_cells(reader, key_indexes);
+            if (is_sampled(key_hash, sample_rate)) {
+                rows.add(reader.get_cells());
+            }
+        }
+        return rows;
+    }
+
+    private static SampleEstimate diff_samples(
+        CsvFile sample1, CsvFile sample2, String[] combination,
+        double sample_rate, long num_rows1, long num_rows2
+    ) {
+        // diff the samples the same way write_unified_diff does
+        KeyIndex index2 = new KeyIndex(sample2, combination);
+        ProjectionPlan plan1 = sample1.get_projection_plan(combination);
+        // value columns of file 2 in the order of file 1
+        ProjectionPlan plan2 = new ProjectionPlan(
+            sample2.get_headers(), combination, sample1.get_headers()
+        );
+        BitSet matched2 = new BitSet(sample2.num_rows());
+        long num_mismatch_rows1 = 0;
+        long num_only_in_file1 = 0;
+
+        for (int k=0; k<sample1.num_rows(); k++) {
+            String[] row1 = sample1.peek_row(k);
+            int first_match = index2.first_match(row1, plan1);
+            if (first_match == -1) {
+                num_only_in_file1++;
+                continue;
+            }
+
+            boolean has_mismatch = false;
+            for (
+                int row_index = first_match; row_index != -1;
+                row_index = index2.next_match(row_index)
+            ) {
+                matched2.set(row_index);
+                if (!plan1.values_equal(
+                    row1, plan2, sample2.peek_row(row_index)
+                )) {
+                    has_mismatch = true;
+                }
+            }
+            if (has_mismatch) { num_mismatch_rows1++; }
+        }
+
+        long num_only_in_file2 = (
+            sample2.num_rows() - matched2.cardinality()
+        );
+        return new SampleEstimate(
+            sample_rate, num_rows1, num_rows2, sample1.num_rows(),
+            sample2.num_rows(), num_mismatch_rows1, num_only_in_file1,
+            num_only_in_file2
+        );
+    }
+}
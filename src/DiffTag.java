@@ -0,0 +1,14 @@
+public enum DiffTag {
+    /*
+    category of a row in a unified diff (see RecordChecker.write_unified_diff)
+    MISMATCH: row of either file whose combination values are in both
+        files, but whose other values differ from a row of the other file
+    ONLY_IN_FILE1: row of file 1 with no rows in file 2 that
+        have the same combination values
+    ONLY_IN_FILE2: row of file 2 with no rows in file 1 that
+        have the same combination values
+    */
+    MISMATCH,
+    ONLY_IN_FILE1,
+    ONLY_IN_FILE2
+}
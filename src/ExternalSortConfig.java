@@ -0,0 +1,39 @@
+public class ExternalSortConfig {
+    /*
+    settings for sorting csv files that are too large to fit in memory
+    (see ExternalSorter). run_size is the max number of rows that are
+    sorted in memory at once and spilled to a temporary run file,
+    and fan_in is the max number of run files merged in a single pass.
+    Settings are checked once here and can't be changed afterwards
+    */
+    public static final int DEFAULT_RUN_SIZE = 100000;
+    public static final int DEFAULT_FAN_IN = 64;
+
+    public final String temp_dir;
+    public final int run_size;
+    public final int fan_in;
+
+    public ExternalSortConfig() {
+        this(
+            System.getProperty("java.io.tmpdir"),
+            DEFAULT_RUN_SIZE, DEFAULT_FAN_IN
+        );
+    }
+
+    public ExternalSortConfig(String temp_dir, int run_size, int fan_in) {
+        if (run_size < 1) {
+            throw new IllegalArgumentException(
+                "RUN SIZE MUST BE AT LEAST 1: " + run_size
+            );
+        }
+        if (fan_in < 2) {
+            // merging fewer than 2 runs at a time never finishes
+            throw new IllegalArgumentException(
+                "FAN IN MUST BE AT LEAST 2: " + fan_in
+            );
+        }
+        this.temp_dir = temp_dir;
+        this.run_size = run_size;
+        this.fan_in = fan_in;
+    }
+}
@@ -0,0 +1,221 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class ExternalSorter {
+    /*
+    sorts the rows of csv files that are too large to fit in memory
+    by the values of the unique combination columns. The file is read
+    in runs of at most config.run_size rows, each run is sorted in
+    memory and spilled to a temporary file, and the runs are then
+    k-way merged (at most config.fan_in runs at a time) until a single
+    sorted file is left. The sort is stable, so rows with the same
+    combination values stay in the order they were in the source file
+    */
+    private final ExternalSortConfig config;
+    private final String[] combination;
+
+    public ExternalSorter(
+        String[] combination, ExternalSortConfig config
+    ) {
+        this.combination = combination.clone();
+        this.config = config;
+    }
+
+    public Path sort_file(
+        String filename
+    ) throws IOException, BadFileFormat, BadCombination {
+        /*
+        sort the csv file by the unique combination and return the
+        path of the sorted (temporary) csv file. The caller is
+        responsible for deleting the sorted file once it's done with it
+        */
+        ArrayList<Path> runs = new ArrayList<>();
+        String[] headers;
+
+        try (CsvCursor cursor = new CsvCursor(filename)) {
+            headers = cursor.get_headers();
+            int[] key_indexes = this.get_key_indexes(headers);
+            ArrayList<String[]> rows = new ArrayList<>();
+
+            while (true) {
+                String[] row = cursor.next_row();
+                if (row != null) { rows.add(row); }
+
+                if (rows.size() >= this.config.run_size || row == null) {
+                    if (rows.size() > 0 || runs.size() == 0) {
+                        // List.sort is stable (merge sort)
+                        rows.sort((row1, row2) -> compare_rows(
+                            row1, row2, key_indexes
+                        ));
+                        runs.add(this.write_run(headers, rows));
+                        rows.clear();
+                    }
+                }
+
+                if (row == null) { break; }
+            }
+        } catch (
+            IOException | BadFileFormat | BadCombination | RuntimeException e
+        ) {
+            delete_runs(runs);
+            throw e;
+        }
+
+        int[] key_indexes = this.get_key_indexes(headers);
+        ArrayList<Path> merged_runs = new ArrayList<>();
+        try {
+            while (runs.size() > 1) {
+                // merge runs in consecutive groups so that rows with the
+                // same combination values keep their original order
+                merged_runs = new ArrayList<>();
+                for (int k=0; k<runs.size(); k+=this.config.fan_in) {
+                    List<Path> group = runs.subList(
+                        k, Math.min(k + this.config.fan_in, runs.size())
+                    );
+                    merged_runs.add(this.merge_runs(
+                        headers, group, key_indexes
+                    ));
+                    delete_runs(group);
+                }
+                runs = merged_runs;
+            }
+        } catch (IOException | RuntimeException e) {
+            // runs merged so far in the failed pass are only in
+            // merged_runs, their source runs are already deleted
+            delete_runs(runs);
+            delete_runs(merged_runs);
+            throw e;
+        }
+
+        return runs.get(0);
+    }
+
+    private int[] get_key_indexes(String[] headers) throws BadCombination {
+        List<String> headers_list = Arrays.asList(headers);
+        int[] key_indexes = new int[this.combination.length];
+        for (int k=0; k<this.combination.length; k++) {
+            key_indexes[k] = headers_list.indexOf(this.combination[k]);
+            if (key_indexes[k] == -1) {
+                // unique combination columns aren't found in file
+                throw new BadCombination(RecordChecker.COMB_NOT_FOUND);
+            }
+        }
+        return key_indexes;
+    }
+
+    private Path write_run(
+        String[] headers, List<String[]> rows
+    ) throws IOException {
+        Path run_path = Files.createTempFile(
+            Path.of(this.config.temp_dir), "run-", ".csv"
+        );
+
+        try (BufferedWriter writer = Files.newBufferedWriter(run_path)) {
+            write_row(writer, headers);
+            for (String[] row : rows) {
+                write_row(writer, row);
+            }
+        } catch (IOException | RuntimeException e) {
+            delete_runs(List.of(run_path));
+            throw e;
+        }
+
+        return run_path;
+    }
+
+    private Path merge_runs(
+        String[] headers, List<Path> runs, int[] key_indexes
+    ) throws IOException {
+        /*
+        k-way merge of the sorted runs into a single sorted run.
+        rows with the same combination values are taken from
+        earlier runs first to keep the merge stable
+        */
+        Path merged_path = Files.createTempFile(
+            Path.of(this.config.temp_dir), "run-", ".csv"
+        );
+
+        ArrayList<BufferedReader> readers = new ArrayList<>();
+        PriorityQueue<Pair<String[], Integer>> heads = new PriorityQueue<>(
+            (head1, head2) -> {
+                int comparison = compare_rows(
+                    head1.first, head2.first, key_indexes
+                );
+                if (comparison != 0) { return comparison; }
+                return Integer.compare(head1.second, head2.second);
+            }
+        );
+
+        try (
+            BufferedWriter writer = Files.newBufferedWriter(merged_path)
+        ) {
+            for (int k=0; k<runs.size(); k++) {
+                BufferedReader reader = Files.newBufferedReader(runs.get(k));
+                readers.add(reader);
+                // skip the headers row of the run
+                reader.readLine();
+                String line = reader.readLine();
+                if (line != null) {
+                    heads.add(new Pair<>(RecordChecker.split_line(line), k));
+                }
+            }
+
+            write_row(writer, headers);
+            while (!heads.isEmpty()) {
+                Pair<String[], Integer> head = heads.poll();
+                write_row(writer, head.first);
+
+                String line = readers.get(head.second).readLine();
+                if (line != null) {
+                    head.first = RecordChecker.split_line(line);
+                    heads.add(head);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // don't leave the half written run behind
+            delete_runs(List.of(merged_path));
+            throw e;
+        } finally {
+            for (BufferedReader reader : readers) {
+                reader.close();
+            }
+        }
+
+        return merged_path;
+    }
+
+    private static void write_row(
+        Writer writer, String[] row
+    ) throws IOException {
+        writer.write(String.join(",", row));
+        writer.write("\n");
+    }
+
+    private static int compare_rows(
+        String[] row1, String[] row2, int[] key_indexes
+    ) {
+        for (int key_index : key_indexes) {
+            int comparison = row1[key_index].compareTo(row2[key_index]);
+            if (comparison != 0) { return comparison; }
+        }
+        return 0;
+    }
+
+    public static void delete_runs(List<Path> runs) {
+        /*
+        delete the run files, logging the ones that can't be deleted
+        (this is only called to clean up, so a failed delete mustn't
+        hide the error or the result of the sort)
+        */
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                CheckerLog.log(
+                    LogLevel.WARN, "could not delete run file " + run, e
+                );
+            }
+        }
+    }
+}
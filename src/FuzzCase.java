@@ -0,0 +1,130 @@
+import java.util.*;
+
+public class FuzzCase {
+    /*
+    a random pair of csv files for the fuzz tests in UnitTests and
+    SystemTests. Column values of both files are sampled from a small
+    pool of strings, so rows across the two files often share the same
+    combination values (and are sometimes duplicated within the same
+    file as well). The combination is made of the first columns of
+    the headers
+    */
+    public final String[] headers;
+    public final ArrayList<String> pool;
+    public final String[] combination;
+    // rows of file 1 and file 2 (headers row first)
+    public final ArrayList<String[]> rows1;
+    public final ArrayList<String[]> rows2;
+
+    public FuzzCase(
+        String[] headers, ArrayList<String> pool, String[] combination,
+        ArrayList<String[]> rows1, ArrayList<String[]> rows2
+    ) {
+        this.headers = headers;
+        this.pool = pool;
+        this.combination = combination;
+        this.rows1 = rows1;
+        this.rows2 = rows2;
+    }
+
+    public static FuzzCase generate(Random generator, int max_rows) {
+        /*
+        2 to 6 columns where all but the last column can be part of
+        the combination, and 1 to max_rows rows in each file
+        */
+        int num_columns = 2 + generator.nextInt(5);
+        return generate(
+            num_columns, 1 + generator.nextInt(num_columns - 1),
+            2 + generator.nextInt(3), 1 + generator.nextInt(max_rows),
+            1 + generator.nextInt(max_rows)
+        );
+    }
+
+    public static FuzzCase generate(
+        int num_columns, int num_combination, int pool_size,
+        int num_rows1, int num_rows2
+    ) {
+        String[] headers = RandomString.gen_multi_exc_arr(num_columns, 5, 10);
+        ArrayList<String> pool = RandomString.generate_multi_exc(pool_size, 3);
+        return new FuzzCase(
+            headers, pool, Arrays.copyOfRange(headers, 0, num_combination),
+            make_overlapping_rows(headers, num_rows1, pool),
+            make_overlapping_rows(headers, num_rows2, pool)
+        );
+    }
+
+    public static ArrayList<String[]> make_overlapping_rows(
+        String[] headers, int num_rows, ArrayList<String> pool
+    ) {
+        /*
+        generate rows (headers row first) whose column values are
+        all sampled from pool
+        */
+        ArrayList<String[]> rows = new ArrayList<>();
+        rows.add(headers);
+        for (int k=0; k<num_rows; k++) {
+            rows.add(RandomString.arraylist_to_arr(
+                RandomString.sample(pool, headers.length)
+            ));
+        }
+        return rows;
+    }
+
+    public static ArrayList<String[]> sort_by_combination(
+        ArrayList<String[]> raw_data, String[] combination
+    ) {
+        /*
+        return a copy of the csv rows (headers row first) where
+        the rows after the headers row are sorted by the values
+        of the columns in the unique combination
+        */
+        List<String> headers = Arrays.asList(raw_data.get(0));
+        int[] key_indexes = new int[combination.length];
+        for (int k=0; k<combination.length; k++) {
+            key_indexes[k] = headers.indexOf(combination[k]);
+        }
+
+        ArrayList<String[]> rows = new ArrayList<>(
+            raw_data.subList(1, raw_data.size())
+        );
+        rows.sort((row1, row2) -> {
+            for (int key_index : key_indexes) {
+                int comparison = row1[key_index].compareTo(row2[key_index]);
+                if (comparison != 0) { return comparison; }
+            }
+            return 0;
+        });
+
+        rows.add(0, raw_data.get(0));
+        return rows;
+    }
+
+    public FuzzCase sorted() {
+        // the same files with their rows sorted by the combination
+        return new FuzzCase(
+            this.headers, this.pool, this.combination,
+            sort_by_combination(this.rows1, this.combination),
+            sort_by_combination(this.rows2, this.combination)
+        );
+    }
+
+    public ArrayList<String[]> make_rows(int num_rows) {
+        // more rows with the same headers and pool of values
+        return make_overlapping_rows(this.headers, num_rows, this.pool);
+    }
+
+    public CsvFile make_file1() {
+        return new CsvFile(new ArrayList<>(this.rows1));
+    }
+
+    public CsvFile make_file2() {
+        // file 2 always has its columns shuffled
+        CsvFile csv_file = new CsvFile(new ArrayList<>(this.rows2));
+        csv_file.scramble_columns_inplace();
+        return csv_file;
+    }
+
+    public String unique_combination() {
+        return String.join(",", this.combination);
+    }
+}
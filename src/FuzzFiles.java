@@ -0,0 +1,115 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class FuzzFiles implements AutoCloseable {
+    /*
+    temporary directory for the fuzz tests in SystemTests, holding the
+    csv files being diffed (see FuzzCase) and the files exported from
+    them. Expected exports are written by a ReconciliationService on
+    the directory (which exports the same file generate_diffs does),
+    and exports of the other diff modes are deleted as soon as they
+    are read, so nothing is left behind in the working directory.
+    close deletes the directory and everything in it
+    */
+    public interface DiffMode {
+        // diff the two files and return the path of the exported file
+        String generate_diffs(
+            String filename1, String filename2, String unique_combination
+        ) throws BadCombination, BadFileFormat, IOException, FilesMismatch;
+    }
+
+    public final Path dir;
+    public final String filename1;
+    public final String filename2;
+    public final ReconciliationService service;
+
+    public FuzzFiles() throws IOException {
+        this.dir = Files.createTempDirectory("fuzz");
+        this.filename1 = this.get_path("fuzz_test_file_1.csv");
+        this.filename2 = this.get_path("fuzz_test_file_2.csv");
+        this.service = new ReconciliationService(this.dir.resolve("exports"));
+    }
+
+    public String get_path(String filename) {
+        return this.dir.resolve(filename).toString();
+    }
+
+    public void write(FuzzCase fuzz_case) throws IOException {
+        this.write(fuzz_case.make_file1(), fuzz_case.make_file2());
+    }
+
+    public void write(
+        CsvFile csv_file_1, CsvFile csv_file_2
+    ) throws IOException {
+        csv_file_1.export_csv(this.filename1);
+        csv_file_2.export_csv(this.filename2);
+    }
+
+    public String read_export(String export_path) throws IOException {
+        // contents of an exported file, which is deleted once read
+        Path path = Path.of(export_path);
+        String contents = Files.readString(path);
+        Files.delete(path);
+        return contents;
+    }
+
+    public String expected_diffs(
+        String unique_combination
+    ) throws BadCombination, BadFileFormat, IOException, FilesMismatch {
+        return this.expected_diffs(
+            this.filename1, this.filename2, unique_combination
+        );
+    }
+
+    public String expected_diffs(
+        String filename1, String filename2, String unique_combination
+    ) throws BadCombination, BadFileFormat, IOException, FilesMismatch {
+        // what generate_diffs exports for the two files
+        return this.read_export(this.service.reconcile(
+            filename1, filename2, unique_combination
+        ));
+    }
+
+    public void assert_same_export(
+        String unique_combination, DiffMode mode
+    ) throws BadCombination, BadFileFormat, IOException, FilesMismatch {
+        this.assert_same_export(
+            this.filename1, this.filename2, unique_combination, mode
+        );
+    }
+
+    public void assert_same_export(
+        String filename1, String filename2, String unique_combination,
+        DiffMode mode
+    ) throws BadCombination, BadFileFormat, IOException, FilesMismatch {
+        /*
+        check that diffing the two files with mode exports
+        exactly the same file that generate_diffs does
+        */
+        String expected = this.expected_diffs(
+            filename1, filename2, unique_combination
+        );
+        String actual = this.read_export(mode.generate_diffs(
+            filename1, filename2, unique_combination
+        ));
+        assertEquals(expected, actual);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // children are sorted after their parent directory
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(this.dir)) {
+            paths = walk.sorted(Comparator.reverseOrder()).collect(
+                Collectors.toList()
+            );
+        }
+        for (Path path : paths) {
+            Files.delete(path);
+        }
+    }
+}
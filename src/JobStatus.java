@@ -0,0 +1,13 @@
+public enum JobStatus {
+    /*
+    status of a job run by a DiffJobRunner, in the order a job goes
+    through them (every job ends up either SUCCEEDED or FAILED)
+    */
+    QUEUED,
+    READING,
+    WAITING_FOR_CPU,
+    DIFFING,
+    EXPORTING,
+    SUCCEEDED,
+    FAILED
+}
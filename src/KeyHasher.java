@@ -0,0 +1,107 @@
+public final class KeyHasher {
+    /*
+    64 bit hashing of row values, used wherever rows are identified by
+    a hash of their values instead of by the values themselves (like
+    RowFingerprints). Values are hashed as their UTF-8 bytes, so
+    hashing the raw cell bytes of a MappedCsvReader line gives the same
+    hash as hashing the Strings read_csv makes from them.
+
+    A hash is built up by starting from SEED, passing it through
+    hash_bytes / hash_string once per value (in a fixed order) and
+    then through finish. The length of each value is mixed in after
+    its bytes, so ["ab", "c"] and ["a", "bc"] hash differently
+    */
+    static final long SEED = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private KeyHasher() {}
+
+    public static long hash_bytes(
+        long hash, byte[] bytes, int start, int end
+    ) {
+        // FNV-1a over the bytes, followed by the length
+        for (int k=start; k<end; k++) {
+            hash = (hash ^ (bytes[k] & 0xff)) * PRIME;
+        }
+        return (hash ^ (end - start)) * PRIME;
+    }
+
+    public static long hash_string(long hash, String value) {
+        /*
+        same as hash_bytes on the UTF-8 bytes of value, without
+        encoding value into a byte array first. Unpaired surrogates
+        are hashed as '?', the same as String.getBytes does
+        */
+        int length = 0;
+        for (int k=0; k<value.length(); k++) {
+            int code_point = value.charAt(k);
+            if (Character.isHighSurrogate((char) code_point)) {
+                if (
+                    k + 1 < value.length() &&
+                    Character.isLowSurrogate(value.charAt(k + 1))
+                ) {
+                    code_point = Character.toCodePoint(
+                        (char) code_point, value.charAt(k + 1)
+                    );
+                    k++;
+                } else {
+                    code_point = '?';
+                }
+            } else if (Character.isLowSurrogate((char) code_point)) {
+                code_point = '?';
+            }
+
+            if (code_point < 0x80) {
+                hash = (hash ^ code_point) * PRIME;
+                length += 1;
+            } else if (code_point < 0x800) {
+                hash = (hash ^ (0xc0 | (code_point >> 6))) * PRIME;
+                hash = (hash ^ (0x80 | (code_point & 0x3f))) * PRIME;
+                length += 2;
+            } else if (code_point < 0x10000) {
+                hash = (hash ^ (0xe0 | (code_point >> 12))) * PRIME;
+                hash = (hash ^ (0x80 | ((code_point >> 6) & 0x3f))) * PRIME;
+                hash = (hash ^ (0x80 | (code_point & 0x3f))) * PRIME;
+                length += 3;
+            } else {
+                hash = (hash ^ (0xf0 | (code_point >> 18))) * PRIME;
+                hash = (hash ^ (0x80 | ((code_point >> 12) & 0x3f))) * PRIME;
+                hash = (hash ^ (0x80 | ((code_point >> 6) & 0x3f))) * PRIME;
+                hash = (hash ^ (0x80 | (code_point & 0x3f))) * PRIME;
+                length += 4;
+            }
+        }
+        return (hash ^ length) * PRIME;
+    }
+
+    public static long finish(long hash) {
+        // spread the bits of the hash (murmur3 finalizer)
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    public static long hash_cells(String[] row, int[] indexes) {
+        // hash of the values of row at indexes (in that order)
+        long hash = SEED;
+        for (int index : indexes) {
+            hash = hash_string(hash, row[index]);
+        }
+        return finish(hash);
+    }
+
+    public static long hash_cells(MappedCsvReader reader, int[] indexes) {
+        // hash of the cells of the current line of the reader at indexes
+        long hash = SEED;
+        byte[] line = reader.line_bytes();
+        for (int index : indexes) {
+            hash = hash_bytes(
+                hash, line, reader.cell_start(index), reader.cell_end(index)
+            );
+        }
+        return finish(hash);
+    }
+}
@@ -0,0 +1,201 @@
+import java.util.*;
+
+public class KeyIndex {
+    /*
+    hash index from the values of a unique combination of columns
+    to the row indexes of every row in a csv file that has those values.
+    This lets us build the index on one file once and then look up
+    the matching rows for each row of the other file, instead of
+    scanning every row of the other file for every lookup.
+
+    The index is made of primitive arrays only: every distinct key
+    (set of combination values) gets a slot in an open addressing table
+    holding the 64 bit hash of the key (see KeyHasher) and the first row
+    with that key, and rows with the same key are chained together
+    through next_rows in ascending order. Keys aren't stored at all:
+    since two keys can have the same hash, a slot only matches a key
+    once the combination values of its first row are compared against
+    it, so lookups are exact. Lookups with first_match / next_match
+    don't allocate anything.
+
+    An index can also be built on only some of the rows of a file (see
+    PartitionedDiff), in which case rows are numbered by their position
+    in the given row indexes instead of by their index in the file.
+
+    The indexed file is read during lookups, so its rows
+    must not be changed while the index is in use
+    */
+    private static final int EMPTY = -1;
+    private static final double MAX_LOAD = 0.5;
+
+    private final CsvFile csv_file;
+    // indexes of the indexed rows in the file (null for every row)
+    private final int[] row_indexes;
+    private final String[] columns;
+    private final ProjectionPlan plan;
+    // plan for looking up keys given as just the combination values
+    private final ProjectionPlan values_plan;
+    // slot_hashes[slot] is the hash of the key in slot,
+    // and slot_rows[slot] is the first row with that key
+    // (or EMPTY if no key has been put in the slot)
+    private long[] slot_hashes;
+    private int[] slot_rows;
+    private int mask;
+    // next_rows[row] is the next row with the same key as row
+    private final int[] next_rows;
+    private int num_keys = 0;
+
+    public KeyIndex(CsvFile csv_file, String[] columns) {
+        this(csv_file, columns, null);
+    }
+
+    public KeyIndex(CsvFile csv_file, String[] columns, int[] row_indexes) {
+        /*
+        index only the rows of csv_file at row_indexes (which must be
+        in ascending order), or every row if row_indexes is null.
+        Matches are numbered by their position in row_indexes, and
+        get_row_index gives their index in the file
+        */
+        assert csv_file.has_columns(columns);
+        this.csv_file = csv_file;
+        this.row_indexes = row_indexes;
+        this.columns = columns.clone();
+        this.plan = csv_file.get_projection_plan(columns);
+        this.values_plan = new ProjectionPlan(columns, columns);
+        this.next_rows = new int[
+            row_indexes == null ? csv_file.num_rows() : row_indexes.length
+        ];
+        this.allocate_slots(16);
+
+        // rows are added in descending order and each row is put in
+        // front of its chain, so matches are returned in the same
+        // order they appear in the file
+        for (int k=this.next_rows.length - 1; k>=0; k--) {
+            String[] row = csv_file.peek_row(this.get_row_index(k));
+            long hash = this.plan.hash_key(row);
+            int slot = this.find_slot(hash, row, this.plan);
+
+            if (this.slot_rows[slot] == EMPTY) {
+                this.next_rows[k] = EMPTY;
+                this.slot_hashes[slot] = hash;
+                this.num_keys++;
+            } else {
+                this.next_rows[k] = this.slot_rows[slot];
+            }
+
+            this.slot_rows[slot] = k;
+            if (this.num_keys > MAX_LOAD * this.slot_rows.length) {
+                this.allocate_slots(2 * this.slot_rows.length);
+            }
+        }
+    }
+
+    private void allocate_slots(int capacity) {
+        // (re)build the table of slots with room for capacity slots
+        long[] old_hashes = this.slot_hashes;
+        int[] old_rows = this.slot_rows;
+        this.slot_hashes = new long[capacity];
+        this.slot_rows = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(this.slot_rows, EMPTY);
+        if (old_rows == null) { return; }
+
+        for (int k=0; k<old_rows.length; k++) {
+            if (old_rows[k] == EMPTY) { continue; }
+            // keys in the old table are distinct, so
+            // only an empty slot has to be found
+            int slot = (int) old_hashes[k] & this.mask;
+            while (this.slot_rows[slot] != EMPTY) {
+                slot = (slot + 1) & this.mask;
+            }
+            this.slot_hashes[slot] = old_hashes[k];
+            this.slot_rows[slot] = old_rows[k];
+        }
+    }
+
+    private int find_slot(long hash, String[] row, ProjectionPlan row_plan) {
+        /*
+        return the slot of the key of row (picked out with row_plan),
+        or the empty slot that the key would be put in if it isn't in
+        the index. Slots with the same hash are skipped over if the
+        combination values of their first row aren't the same
+        */
+        int slot = (int) hash & this.mask;
+        while (true) {
+            int first_row = this.slot_rows[slot];
+            if (first_row == EMPTY) { return slot; }
+            if (this.slot_hashes[slot] == hash && this.plan.keys_equal(
+                this.csv_file.peek_row(this.get_row_index(first_row)),
+                row_plan, row
+            )) {
+                return slot;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+    }
+
+    public int first_match(String[] row, ProjectionPlan row_plan) {
+        /*
+        return the index of the first row in the indexed file with the
+        same combination values as row (a row from another file, whose
+        combination columns are picked out with row_plan), or -1 if
+        there are no such rows. The rest of the matching rows are found
+        by calling next_match with the previous match
+        */
+        assert row_plan.num_keys() == this.columns.length;
+        long hash = row_plan.hash_key(row);
+        return this.slot_rows[this.find_slot(hash, row, row_plan)];
+    }
+
+    public int next_match(int row_index) {
+        // next row after row_index with the same combination values
+        // (or -1 if row_index is the last one)
+        return this.next_rows[row_index];
+    }
+
+    public int get_row_index(int row) {
+        // index in the file of a row returned by first_match / next_match
+        return this.row_indexes == null ? row : this.row_indexes[row];
+    }
+
+    public List<Integer> get_matches(String[] column_values) {
+        /*
+        return the indexes of all rows in the indexed file where
+        the columns of the index have the values in column_values
+        (returns an empty list if there are no such rows)
+        */
+        assert column_values.length == this.columns.length;
+        ArrayList<Integer> matches = new ArrayList<>();
+        for (
+            int row_index = this.first_match(column_values, this.values_plan);
+            row_index != EMPTY; row_index = this.next_match(row_index)
+        ) {
+            matches.add(row_index);
+        }
+        return matches;
+    }
+
+    public boolean has_matches(String[] column_values) {
+        return this.first_match(column_values, this.values_plan) != EMPTY;
+    }
+
+    public boolean has_matches(String[] row, ProjectionPlan row_plan) {
+        return this.first_match(row, row_plan) != EMPTY;
+    }
+
+    public String[] get_columns() {
+        return this.columns.clone();
+    }
+
+    public int num_keys() {
+        return this.num_keys;
+    }
+
+    public long memory_bytes() {
+        /*
+        rough estimate of the heap used by the index
+        (the indexed file itself isn't counted)
+        */
+        return 12L * this.slot_rows.length + 4L * this.next_rows.length;
+    }
+}
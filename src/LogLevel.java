@@ -0,0 +1,7 @@
+public enum LogLevel {
+    // levels of log messages (see CheckerLog), from least to most severe
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR
+}
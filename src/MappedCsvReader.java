@@ -0,0 +1,259 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class MappedCsvReader implements AutoCloseable {
+    /*
+    reads the lines of a csv file through a memory mapped view of the
+    file instead of a BufferedReader. Line breaks and commas are found
+    by scanning the raw (UTF-8) bytes of the file, and each line is
+    only described by the byte offsets of its cells: the bytes of the
+    current line are copied into a reused buffer, and Strings are only
+    built when a cell value is actually asked for.
+
+    Lines are split exactly the same way as reading them with
+    BufferedReader.readLine() and calling RecordChecker.split_line:
+    lines end at \n, \r or \r\n, whitespace around the line is ignored,
+    and empty cells at the end of a line are dropped
+    */
+    static final int DEFAULT_WINDOW_SIZE = 1 << 28;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long end;
+    private final int window_size;
+
+    private MappedByteBuffer window = null;
+    private long window_start = 0;
+    private int num_mappings = 0;
+    // absolute file position of the start of the next line
+    private long position;
+
+    private byte[] line = new byte[256];
+    private int line_length = 0;
+    // cell k of the current line is in line[cell_starts[k]:cell_ends[k]]
+    private int[] cell_starts = new int[16];
+    private int[] cell_ends = new int[16];
+    private int num_cells = 0;
+
+    public MappedCsvReader(String filename) throws IOException {
+        this(filename, 0, -1, DEFAULT_WINDOW_SIZE);
+    }
+
+    MappedCsvReader(
+        String filename, long start, long end, int window_size
+    ) throws IOException {
+        /*
+        read the lines in file bytes [start:end] (or until the end of
+        the file if end is -1), mapping at most window_size bytes of the
+        file into memory at a time. start must be the start of a line
+        */
+        // RandomAccessFile throws FileNotFoundException for directories
+        this.file = new RandomAccessFile(filename.trim(), "r");
+        this.channel = this.file.getChannel();
+        long size = this.channel.size();
+        this.end = (end == -1) ? size : Math.min(end, size);
+        this.position = start;
+        this.window_size = window_size;
+    }
+
+    public boolean next_line() throws IOException {
+        /*
+        move on to the next line of the file, returns false
+        if there are no lines left to be read
+        */
+        if (this.position >= this.end) { return false; }
+
+        long line_start = this.position;
+        long line_end = this.find_line_end(line_start);
+        int length = (int) (line_end - line_start);
+        if (length > this.line.length) {
+            this.line = new byte[Math.max(length, this.line.length * 2)];
+        }
+
+        this.window.get(
+            (int) (line_start - this.window_start), this.line, 0, length
+        );
+        this.line_length = length;
+        this.position = this.skip_line_break(line_end);
+        this.split_cells();
+        return true;
+    }
+
+    private long find_line_end(long line_start) throws IOException {
+        /*
+        return the file position of the line break (or end of file)
+        that ends the line starting at line_start, remapping the window
+        of the file so that it contains the entire line. The window is
+        only remapped once the line runs past its end, so a new window
+        is mapped about once every window_size bytes of the file
+        */
+        this.map_window(line_start, 1);
+        long position = line_start;
+
+        while (true) {
+            long window_end = this.window_start + this.window.limit();
+            while (position < window_end) {
+                byte value = this.window.get(
+                    (int) (position - this.window_start)
+                );
+                if (value == '\n' || value == '\r') { return position; }
+                position++;
+            }
+
+            if (window_end >= this.end) { return this.end; }
+            // line is longer than the rest of the window
+            long length = Math.max(
+                this.window_size, 2 * (window_end - line_start)
+            );
+            this.map_window(line_start, length);
+        }
+    }
+
+    private long skip_line_break(long line_end) throws IOException {
+        if (line_end >= this.end) { return this.end; }
+
+        this.map_window(line_end, 1);
+        byte value = this.window.get((int) (line_end - this.window_start));
+        if (value == '\r' && line_end + 1 < this.end) {
+            this.map_window(line_end, 2);
+            int next_index = (int) (line_end + 1 - this.window_start);
+            if (this.window.get(next_index) == '\n') {
+                // \r\n counts as a single line break
+                return line_end + 2;
+            }
+        }
+        return line_end + 1;
+    }
+
+    private void map_window(long start, long min_length) throws IOException {
+        /*
+        make sure bytes [start:start + min_length] of the file (or up to
+        the end of the file) are inside the mapped window of the file
+        */
+        long needed_end = Math.min(start + min_length, this.end);
+        if (this.window != null && start >= this.window_start) {
+            long window_end = this.window_start + this.window.limit();
+            if (needed_end <= window_end) { return; }
+        }
+
+        long length = Math.min(
+            Math.max(min_length, this.window_size), this.end - start
+        );
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("LINE TOO LONG");
+        }
+
+        this.window = this.channel.map(
+            FileChannel.MapMode.READ_ONLY, start, length
+        );
+        this.window_start = start;
+        this.num_mappings++;
+    }
+
+    private void split_cells() {
+        // ignore whitespace around the start and end of the line
+        int start = 0;
+        int end = this.line_length;
+        while (start < end && (this.line[start] & 0xff) <= ' ') { start++; }
+        while (end > start && (this.line[end - 1] & 0xff) <= ' ') { end--; }
+
+        this.num_cells = 0;
+        int cell_start = start;
+        boolean has_comma = false;
+
+        for (int k=start; k<end; k++) {
+            if (this.line[k] != ',') { continue; }
+            this.add_cell(cell_start, k);
+            cell_start = k + 1;
+            has_comma = true;
+        }
+
+        this.add_cell(cell_start, end);
+        if (!has_comma) { return; }
+
+        // String.split drops empty cells at the end of the line
+        while (this.num_cells > 0) {
+            int last = this.num_cells - 1;
+            if (this.cell_starts[last] != this.cell_ends[last]) { break; }
+            this.num_cells--;
+        }
+    }
+
+    private void add_cell(int start, int end) {
+        if (this.num_cells == this.cell_starts.length) {
+            int new_length = this.cell_starts.length * 2;
+            this.cell_starts = Arrays.copyOf(this.cell_starts, new_length);
+            this.cell_ends = Arrays.copyOf(this.cell_ends, new_length);
+        }
+
+        this.cell_starts[this.num_cells] = start;
+        this.cell_ends[this.num_cells] = end;
+        this.num_cells++;
+    }
+
+    public int num_cells() {
+        return this.num_cells;
+    }
+
+    public byte[] line_bytes() {
+        // buffer holding the bytes of the current line (reused per line)
+        return this.line;
+    }
+
+    public int cell_start(int index) {
+        return this.cell_starts[index];
+    }
+
+    public int cell_end(int index) {
+        return this.cell_ends[index];
+    }
+
+    public String get_cell(int index) {
+        int start = this.cell_starts[index];
+        return new String(
+            this.line, start, this.cell_ends[index] - start,
+            StandardCharsets.UTF_8
+        );
+    }
+
+    public String[] get_cells() {
+        String[] cells = new String[this.num_cells];
+        for (int k=0; k<this.num_cells; k++) {
+            cells[k] = this.get_cell(k);
+        }
+        return cells;
+    }
+
+    public boolean cell_equals(int index, byte[] value) {
+        return Arrays.equals(
+            this.line, this.cell_starts[index], this.cell_ends[index],
+            value, 0, value.length
+        );
+    }
+
+    public int encode_cell(int index, ColumnDictionary dictionary) {
+        // dictionary code of a cell, without building a String for it
+        return dictionary.encode(
+            this.line, this.cell_starts[index], this.cell_ends[index]
+        );
+    }
+
+    int num_mappings() {
+        // number of times a window of the file has been mapped
+        return this.num_mappings;
+    }
+
+    public long get_position() {
+        // file position of the start of the next line
+        return this.position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.window = null;
+        this.file.close();
+    }
+}
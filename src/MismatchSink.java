@@ -0,0 +1,10 @@
+import java.io.IOException;
+
+public interface MismatchSink {
+    /*
+    receives mismatching rows as they are found by a diff, so that
+    they can be written out (or collected) without having to wait
+    for the whole comparison to finish first
+    */
+    void add_row(String[] row) throws IOException;
+}
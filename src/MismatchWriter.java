@@ -0,0 +1,152 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+
+public class MismatchWriter implements MismatchSink, AutoCloseable {
+    /*
+    writes mismatching rows to the export file as soon as they're
+    received, in the same format as RecordChecker.export_mismatches
+    (comma joined columns, one row per line, no header row).
+
+    Cells are copied straight into a reused char buffer and encoded
+    into a large reused byte buffer, which is only written to the file
+    (through its FileChannel) when it fills up, so no line Strings are
+    built per row and the file is written in big blocks.
+
+    Text is always encoded as UTF-8 (whatever the default charset of
+    the platform is), since that is what MappedCsvReader and KeyHasher
+    decode and hash, so exports, sorted runs and fingerprinted files
+    read back the same values that were written
+    */
+    static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    private static final int CHAR_BUFFER_SIZE = 8192;
+
+    private final FileOutputStream stream;
+    private final FileChannel channel;
+    private final CharsetEncoder encoder;
+    private final CharBuffer chars;
+    private final ByteBuffer bytes;
+    // whether to fsync the file when it is closed
+    private final boolean sync;
+
+    private long rows_written = 0;
+    private boolean closed = false;
+
+    public MismatchWriter(String export_path) throws IOException {
+        this(export_path, false);
+    }
+
+    public MismatchWriter(
+        String export_path, boolean sync
+    ) throws IOException {
+        this(export_path, sync, DEFAULT_BUFFER_SIZE);
+    }
+
+    MismatchWriter(
+        String export_path, boolean sync, int buffer_size
+    ) throws IOException {
+        if (buffer_size < 16) throw new IllegalArgumentException();
+        this.stream = new FileOutputStream(export_path);
+        this.channel = this.stream.getChannel();
+        // unpaired surrogates are replaced the same way String.getBytes
+        // replaces them, so values hash the same once read back in
+        this.encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.chars = CharBuffer.allocate(
+            Math.min(CHAR_BUFFER_SIZE, buffer_size)
+        );
+        this.bytes = ByteBuffer.allocate(buffer_size);
+        this.sync = sync;
+    }
+
+    @Override
+    public void add_row(String[] row) throws IOException {
+        for (int k=0; k<row.length; k++) {
+            if (k > 0) { this.put_char(','); }
+            // String.join writes null cells as "null"
+            this.put_string(String.valueOf((Object) row[k]));
+        }
+
+        this.put_char('\n');
+        this.rows_written++;
+    }
+
+    private void put_char(char value) throws IOException {
+        if (!this.chars.hasRemaining()) { this.encode_chars(false); }
+        this.chars.put(value);
+    }
+
+    private void put_string(String value) throws IOException {
+        int position = 0;
+        while (position < value.length()) {
+            if (!this.chars.hasRemaining()) { this.encode_chars(false); }
+            int length = Math.min(
+                this.chars.remaining(), value.length() - position
+            );
+            value.getChars(
+                position, position + length,
+                this.chars.array(), this.chars.position()
+            );
+            this.chars.position(this.chars.position() + length);
+            position += length;
+        }
+    }
+
+    private void encode_chars(boolean end_of_input) throws IOException {
+        /*
+        encode the buffered chars into the byte buffer, writing the
+        byte buffer out to the file whenever it fills up. Chars that
+        can't be encoded yet (half of a surrogate pair) stay buffered
+        */
+        this.chars.flip();
+        while (true) {
+            CoderResult result = this.encoder.encode(
+                this.chars, this.bytes, end_of_input
+            );
+            if (result.isOverflow()) {
+                this.write_bytes();
+                continue;
+            }
+            if (result.isError()) { result.throwException(); }
+            break;
+        }
+        this.chars.compact();
+    }
+
+    private void write_bytes() throws IOException {
+        this.bytes.flip();
+        while (this.bytes.hasRemaining()) {
+            this.channel.write(this.bytes);
+        }
+        this.bytes.clear();
+    }
+
+    public void flush() throws IOException {
+        this.encode_chars(false);
+        this.write_bytes();
+    }
+
+    public long rows_written() {
+        return this.rows_written;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) { return; }
+        this.closed = true;
+
+        try {
+            this.encode_chars(true);
+            while (this.encoder.flush(this.bytes).isOverflow()) {
+                this.write_bytes();
+            }
+            this.write_bytes();
+            if (this.sync) { this.channel.force(true); }
+        } finally {
+            this.stream.close();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class ParallelCsvParser {
+    /*
+    parses a csv file into a CsvFile using multiple threads. The rows
+    after the headers row are split into byte ranges that start and
+    end on line boundaries, each range is parsed by its own
+    MappedCsvReader on a ForkJoinPool, and the rows of every range are
+    then joined back together in the order they were in the file.
+    The result (and the errors thrown) are the same as read_csv
+    */
+    static final long MIN_CHUNK_BYTES = 1 << 20;
+    static final int CHUNKS_PER_THREAD = 4;
+
+    private final int num_threads;
+    private final long min_chunk_bytes;
+
+    public ParallelCsvParser(int num_threads) {
+        this(num_threads, MIN_CHUNK_BYTES);
+    }
+
+    ParallelCsvParser(int num_threads, long min_chunk_bytes) {
+        if (num_threads < 1) throw new IllegalArgumentException();
+        if (min_chunk_bytes < 1) throw new IllegalArgumentException();
+        this.num_threads = num_threads;
+        this.min_chunk_bytes = min_chunk_bytes;
+    }
+
+    public CsvFile parse(
+        String raw_filename
+    ) throws IOException, BadFileFormat {
+        String filename = raw_filename.trim();
+        String[] headers;
+        long rows_start;
+        long file_size;
+
+        try (MappedCsvReader reader = new MappedCsvReader(filename)) {
+            if (!reader.next_line()) {
+                throw new BadFileFormat(RecordChecker.NO_HEADERS);
+            }
+            headers = reader.get_cells();
+            rows_start = reader.get_position();
+        }
+
+        ArrayList<Long> boundaries = new ArrayList<>();
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+            FileChannel channel = file.getChannel();
+            file_size = channel.size();
+            long num_bytes = file_size - rows_start;
+            long num_chunks = Math.max(1, Math.min(
+                (long) this.num_threads * CHUNKS_PER_THREAD,
+                num_bytes / this.min_chunk_bytes
+            ));
+
+            boundaries.add(rows_start);
+            for (long k=1; k<num_chunks; k++) {
+                long boundary = find_line_start(
+                    channel, rows_start + (num_bytes * k) / num_chunks
+                );
+                if (boundary > boundaries.get(boundaries.size() - 1)) {
+                    boundaries.add(boundary);
+                }
+            }
+            boundaries.add(file_size);
+        }
+
+        ArrayList<Callable<ArrayList<String[]>>> tasks = new ArrayList<>();
+        for (int k=0; k<boundaries.size() - 1; k++) {
+            long start = boundaries.get(k);
+            long end = boundaries.get(k + 1);
+            tasks.add(() -> parse_chunk(filename, start, end, headers.length));
+        }
+
+        ArrayList<String[]> csv_data = new ArrayList<>();
+        csv_data.add(headers);
+        ForkJoinPool pool = new ForkJoinPool(this.num_threads);
+
+        try {
+            List<Future<ArrayList<String[]>>> results = pool.invokeAll(tasks);
+            // check every chunk for errors before using any of them
+            ArrayList<ArrayList<String[]>> chunk_rows = new ArrayList<>();
+            for (Future<ArrayList<String[]>> result : results) {
+                chunk_rows.add(result.get());
+            }
+
+            int num_rows = 0;
+            for (ArrayList<String[]> rows : chunk_rows) {
+                num_rows += rows.size();
+            }
+            csv_data.ensureCapacity(num_rows + 1);
+            for (ArrayList<String[]> rows : chunk_rows) {
+                csv_data.addAll(rows);
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // ForkJoinPool wraps checked exceptions of tasks
+            // inside of a RuntimeException
+            while (
+                cause instanceof RuntimeException && cause.getCause() != null
+            ) {
+                cause = cause.getCause();
+            }
+
+            if (cause instanceof BadFileFormat) {
+                throw (BadFileFormat) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("PARSING INTERRUPTED");
+        } finally {
+            pool.shutdown();
+        }
+
+        if (headers.length < 1) {
+            // We need to have one column at the least
+            throw new BadFileFormat(RecordChecker.INSUFFICIENT_COLUMNS);
+        } else if (!RecordChecker.is_unique_arr(headers)) {
+            throw new BadFileFormat(RecordChecker.DUP_COL_ERR);
+        }
+
+        if (CheckerLog.is_enabled(LogLevel.INFO)) {
+            CheckerLog.log(LogLevel.INFO, "HEADERS");
+            CheckerLog.log(LogLevel.INFO, Arrays.toString(headers));
+        }
+        return new CsvFile(csv_data);
+    }
+
+    private static ArrayList<String[]> parse_chunk(
+        String filename, long start, long end, int num_columns
+    ) throws IOException, BadFileFormat {
+        ArrayList<String[]> rows = new ArrayList<>();
+        try (MappedCsvReader reader = new MappedCsvReader(
+            filename, start, end, MappedCsvReader.DEFAULT_WINDOW_SIZE
+        )) {
+            while (reader.next_line()) {
+                if (reader.num_cells() != num_columns) {
+                    // this row has more columns than were in the headers row
+                    throw new BadFileFormat(RecordChecker.COL_MISMATCH);
+                }
+                rows.add(reader.get_cells());
+            }
+        }
+        return rows;
+    }
+
+    static long find_line_start(
+        FileChannel channel, long position
+    ) throws IOException {
+        /*
+        return the file position of the first line that starts at or
+        after position. A line starts after a \n, or after a \r that
+        isn't followed by a \n (so \r\n is never split in two)
+        */
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long buffer_start = position - 1;
+        int previous = -1;
+
+        while (buffer_start < size) {
+            buffer.clear();
+            int num_read = channel.read(buffer, buffer_start);
+            if (num_read <= 0) { break; }
+
+            for (int k=0; k<num_read; k++) {
+                int current = buffer.get(k);
+                if (previous == '\n') {
+                    return buffer_start + k;
+                } else if (previous == '\r' && current != '\n') {
+                    return buffer_start + k;
+                }
+                previous = current;
+            }
+            buffer_start += num_read;
+        }
+
+        return size;
+    }
+}
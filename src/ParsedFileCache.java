@@ -0,0 +1,152 @@
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+public class ParsedFileCache {
+    /*
+    cache of parsed csv files (see CachedCsvFile) for when the same file
+    is compared against many others, so that it is only read and
+    indexed once. Files are cached by their absolute path, and a
+    cached file is only used if the file still has the same size,
+    modification time and file key (inode) it had when it was read.
+
+    Files are evicted in least recently used order once the estimated
+    heap used by every cached file goes over the byte budget. hits and
+    misses count lookups of files, key indexes and row value hashes
+    */
+    private static final ParsedFileCache shared = new ParsedFileCache(
+        Runtime.getRuntime().maxMemory() / 4
+    );
+
+    // iterates from the least to the most recently used file
+    private final LinkedHashMap<String, CachedCsvFile> files = (
+        new LinkedHashMap<>(16, 0.75f, true)
+    );
+    private long budget_bytes;
+    private long used_bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public ParsedFileCache(long budget_bytes) {
+        if (budget_bytes < 0) throw new IllegalArgumentException();
+        this.budget_bytes = budget_bytes;
+    }
+
+    public static ParsedFileCache get_shared() {
+        // cache shared by the whole process
+        return shared;
+    }
+
+    public CachedCsvFile get(
+        String raw_filename
+    ) throws IOException, BadFileFormat {
+        /*
+        return the cached version of a csv file, reading it in
+        with RecordChecker.read_csv if it isn't cached yet
+        (or if it has changed since it was cached)
+        */
+        String filename = raw_filename.trim();
+        Path path = Path.of(filename).toAbsolutePath().normalize();
+        String key = path.toString();
+        // identity of the file is taken before reading it, so a file
+        // changed while being read is never used from the cache
+        String identity = get_identity(path);
+
+        synchronized (this) {
+            CachedCsvFile cached_file = this.files.get(key);
+            if (cached_file != null && cached_file.identity.equals(identity)) {
+                this.hits++;
+                return cached_file;
+            }
+            this.misses++;
+        }
+
+        // files are read outside of the lock, so that reading one
+        // file doesn't hold up lookups of files that are cached
+        CachedCsvFile cached_file = new CachedCsvFile(
+            this, key, identity, RecordChecker.read_csv(filename)
+        );
+
+        synchronized (this) {
+            CachedCsvFile old_file = this.files.put(key, cached_file);
+            if (old_file != null) { this.used_bytes -= old_file.memory_bytes; }
+            this.used_bytes += cached_file.memory_bytes;
+            this.evict();
+        }
+        return cached_file;
+    }
+
+    private static String get_identity(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(
+            path, BasicFileAttributes.class
+        );
+        return (
+            attributes.size() + ":" +
+            attributes.lastModifiedTime().toMillis() + ":" +
+            attributes.fileKey()
+        );
+    }
+
+    synchronized void record_lookup(boolean hit) {
+        if (hit) {
+            this.hits++;
+        } else {
+            this.misses++;
+        }
+    }
+
+    synchronized void add_bytes(CachedCsvFile cached_file, long num_bytes) {
+        // account for heap used by something built for a cached file
+        cached_file.memory_bytes += num_bytes;
+        if (this.files.get(cached_file.path) != cached_file) { return; }
+        this.used_bytes += num_bytes;
+        this.evict();
+    }
+
+    private void evict() {
+        Iterator<CachedCsvFile> iterator = this.files.values().iterator();
+        while (this.used_bytes > this.budget_bytes && iterator.hasNext()) {
+            CachedCsvFile cached_file = iterator.next();
+            iterator.remove();
+            this.used_bytes -= cached_file.memory_bytes;
+            this.evictions++;
+        }
+    }
+
+    public synchronized void set_budget_bytes(long budget_bytes) {
+        if (budget_bytes < 0) throw new IllegalArgumentException();
+        this.budget_bytes = budget_bytes;
+        this.evict();
+    }
+
+    public synchronized void clear() {
+        this.files.clear();
+        this.used_bytes = 0;
+    }
+
+    public synchronized long get_budget_bytes() {
+        return this.budget_bytes;
+    }
+
+    public synchronized long used_bytes() {
+        return this.used_bytes;
+    }
+
+    public synchronized int num_files() {
+        return this.files.size();
+    }
+
+    public synchronized long hits() {
+        return this.hits;
+    }
+
+    public synchronized long misses() {
+        return this.misses;
+    }
+
+    public synchronized long evictions() {
+        return this.evictions;
+    }
+}
@@ -0,0 +1,243 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+public class PartitionedDiff {
+    /*
+    multithreaded version of RecordChecker.get_mismatch_rows. Rows of
+    both files are hash partitioned on the values of their unique
+    combination columns, so rows that can match each other always land
+    in the same partition. Each pair of partitions is then diffed on
+    its own worker thread, and the mismatches of every partition are
+    merged back in the order of the rows in file 1 they belong to, so
+    the result is identical to the single threaded diff
+    */
+    static final int PARTITIONS_PER_THREAD = 4;
+
+    private final CsvFile csv_file1;
+    // csv file 2 with its columns in the same order as csv file 1
+    private final ReorderedCsvFile csv_file2;
+    private final String[] combination;
+    private final ProjectionPlan plan1;
+    private final ProjectionPlan plan2;
+    private final int num_threads;
+    private final int num_partitions;
+
+    public PartitionedDiff(
+        CsvFile csv_file1, CsvFile csv_file2, String[] combination,
+        int num_threads
+    ) throws BadCombination, FilesMismatch {
+        if (num_threads < 1) throw new IllegalArgumentException();
+        this.csv_file1 = csv_file1;
+        this.csv_file2 = RecordChecker.reorder_view_to_match(
+            csv_file1, csv_file2, combination
+        );
+        this.combination = combination.clone();
+        this.plan1 = this.csv_file1.get_projection_plan(combination);
+        // picks columns out of the rows of the original file 2
+        this.plan2 = this.csv_file2.get_projection_plan(combination);
+        this.num_threads = num_threads;
+        this.num_partitions = num_threads * PARTITIONS_PER_THREAD;
+    }
+
+    public ArrayList<String[]> get_mismatch_rows() {
+        ExecutorService executor = Executors.newFixedThreadPool(
+            this.num_threads
+        );
+
+        try {
+            int[][][] partitions1 = this.partition(
+                executor, this.csv_file1, this.plan1
+            );
+            int[][][] partitions2 = this.partition(
+                executor, this.csv_file2.get_source(), this.plan2
+            );
+
+            ArrayList<Callable<ArrayList<Pair<Integer, ArrayList<String[]>>>>
+            > tasks = new ArrayList<>();
+            for (int k=0; k<this.num_partitions; k++) {
+                int partition = k;
+                tasks.add(() -> this.diff_partition(
+                    partitions1, partitions2, partition
+                ));
+            }
+
+            return merge_results(run_all(executor, tasks));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static <T> ArrayList<T> run_all(
+        ExecutorService executor, List<Callable<T>> tasks
+    ) {
+        // run the tasks on the executor and return their results in order
+        ArrayList<T> results = new ArrayList<>();
+        try {
+            for (Future<T> result : executor.invokeAll(tasks)) {
+                results.add(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("DIFF INTERRUPTED");
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        return results;
+    }
+
+    private int[][][] partition(
+        ExecutorService executor, CsvFile csv_file, ProjectionPlan plan
+    ) {
+        /*
+        split the row indexes of the file into partitions based on
+        the hash of their combination values. The rows of the file are
+        split into one range per thread, and every range is partitioned
+        on its own thread, so partitioning doesn't hold up the diff
+        on the calling thread. Returns chunks where chunks[c][p] holds
+        the row indexes of range c that belong in partition p, in
+        ascending order (so going through the ranges in order gives
+        the row indexes of a partition in ascending order)
+        */
+        int num_rows = csv_file.num_rows();
+        ArrayList<Callable<int[][]>> tasks = new ArrayList<>();
+        for (int k=0; k<this.num_threads; k++) {
+            int start = (int) ((long) num_rows * k / this.num_threads);
+            int end = (int) ((long) num_rows * (k + 1) / this.num_threads);
+            tasks.add(() -> this.partition_range(csv_file, plan, start, end));
+        }
+
+        return run_all(executor, tasks).toArray(new int[0][][]);
+    }
+
+    private int[][] partition_range(
+        CsvFile csv_file, ProjectionPlan plan, int start, int end
+    ) {
+        // partitions of the row indexes in [start:end] of the file
+        int[] row_partitions = new int[end - start];
+        int[] sizes = new int[this.num_partitions];
+        for (int k=start; k<end; k++) {
+            int partition = Math.floorMod(
+                plan.hash_key(csv_file.peek_row(k)), this.num_partitions
+            );
+            row_partitions[k - start] = partition;
+            sizes[partition]++;
+        }
+
+        int[][] partitions = new int[this.num_partitions][];
+        for (int k=0; k<this.num_partitions; k++) {
+            partitions[k] = new int[sizes[k]];
+            sizes[k] = 0;
+        }
+        for (int k=start; k<end; k++) {
+            int partition = row_partitions[k - start];
+            partitions[partition][sizes[partition]++] = k;
+        }
+
+        return partitions;
+    }
+
+    private ArrayList<Pair<Integer, ArrayList<String[]>>> diff_partition(
+        int[][][] partitions1, int[][][] partitions2, int partition
+    ) {
+        /*
+        diff the rows of a single partition, returning pairs of <
+            index of a row in file 1,
+            mismatches for that row (in the order that
+            RecordChecker.get_mismatch_rows would return them)
+        > in ascending order of the row index in file 1.
+        The rows of file 2 in the partition are indexed with a KeyIndex,
+        so building and probing the index doesn't allocate per row
+        */
+        KeyIndex index2 = new KeyIndex(
+            this.csv_file2.get_source(), this.combination,
+            get_partition(partitions2, partition)
+        );
+
+        ArrayList<Pair<Integer, ArrayList<String[]>>> results = (
+            new ArrayList<>()
+        );
+        for (int[][] chunk : partitions1) {
+            for (int row_index : chunk[partition]) {
+                String[] row1 = this.csv_file1.peek_row(row_index);
+                ArrayList<String[]> mismatches = null;
+
+                for (
+                    int match = index2.first_match(row1, this.plan1);
+                    match != -1; match = index2.next_match(match)
+                ) {
+                    int row_index2 = index2.get_row_index(match);
+                    String[] row2 = this.csv_file2.peek_row(row_index2);
+                    if (!this.plan1.values_equal(row1, this.plan2, row2)) {
+                        if (mismatches == null) {
+                            mismatches = new ArrayList<>();
+                        }
+                        mismatches.add(this.csv_file2.get_row(row_index2));
+                    }
+                }
+
+                if (mismatches == null) { continue; }
+                mismatches.add(row1.clone());
+                results.add(new Pair<>(row_index, mismatches));
+            }
+        }
+
+        return results;
+    }
+
+    private static int[] get_partition(int[][][] chunks, int partition) {
+        // row indexes of a partition across every chunk, in ascending order
+        int size = 0;
+        for (int[][] chunk : chunks) { size += chunk[partition].length; }
+
+        int[] row_indexes = new int[size];
+        int position = 0;
+        for (int[][] chunk : chunks) {
+            System.arraycopy(
+                chunk[partition], 0, row_indexes, position,
+                chunk[partition].length
+            );
+            position += chunk[partition].length;
+        }
+        return row_indexes;
+    }
+
+    private static ArrayList<String[]> merge_results(
+        ArrayList<ArrayList<Pair<Integer, ArrayList<String[]>>>> results
+    ) {
+        /*
+        k-way merge of the mismatches of every partition
+        by the index of the row in file 1 they belong to
+        */
+        ArrayList<String[]> all_mismatch_rows = new ArrayList<>();
+        // queue of <next row index in file 1, partition number>
+        PriorityQueue<Pair<Integer, Integer>> heads = new PriorityQueue<>(
+            Comparator.comparingInt(head -> head.first)
+        );
+        int[] positions = new int[results.size()];
+
+        for (int k=0; k<results.size(); k++) {
+            if (results.get(k).size() == 0) { continue; }
+            heads.add(new Pair<>(results.get(k).get(0).first, k));
+        }
+
+        while (!heads.isEmpty()) {
+            Pair<Integer, Integer> head = heads.poll();
+            int partition = head.second;
+            ArrayList<Pair<Integer, ArrayList<String[]>>> partition_results = (
+                results.get(partition)
+            );
+
+            all_mismatch_rows.addAll(
+                partition_results.get(positions[partition]).second
+            );
+            positions[partition]++;
+
+            if (positions[partition] < partition_results.size()) {
+                head.first = partition_results.get(positions[partition]).first;
+                heads.add(head);
+            }
+        }
+
+        return all_mismatch_rows;
+    }
+}
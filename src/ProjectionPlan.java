@@ -0,0 +1,175 @@
+import java.util.*;
+
+public class ProjectionPlan {
+    /*
+    column positions of the unique combination columns (key columns)
+    and of all the other columns (value columns) in a csv file, worked
+    out once so that picking the key or value columns out of a row
+    is just array indexing instead of looking up every column by name
+    */
+    private final String[] columns;
+    private final int[] key_indexes;
+    private final int[] value_indexes;
+
+    public ProjectionPlan(String[] headers, String[] columns) {
+        this(headers, columns, headers);
+    }
+
+    public ProjectionPlan(
+        String[] headers, String[] columns, String[] value_order
+    ) {
+        /*
+        plan where the value columns are in the order they are in
+        value_order (the headers of another file with the same columns)
+        instead of the order they are in this file, so that the value
+        columns of rows from both files line up with each other
+        */
+        assert Set.of(headers).equals(Set.of(value_order));
+        this.columns = columns.clone();
+        this.key_indexes = new int[columns.length];
+        boolean[] is_key = new boolean[headers.length];
+        int num_values = headers.length;
+
+        for (int k=0; k<columns.length; k++) {
+            this.key_indexes[k] = -1;
+            for (int i=0; i<headers.length; i++) {
+                if (headers[i].equals(columns[k])) {
+                    this.key_indexes[k] = i;
+                    break;
+                }
+            }
+
+            int key_index = this.key_indexes[k];
+            if (key_index != -1 && !is_key[key_index]) {
+                is_key[key_index] = true;
+                num_values--;
+            }
+        }
+
+        // value columns are in the same order as they are in value_order
+        List<String> header_list = Arrays.asList(headers);
+        this.value_indexes = new int[num_values];
+        int position = 0;
+        for (String column : value_order) {
+            int index = header_list.indexOf(column);
+            if (!is_key[index]) { this.value_indexes[position++] = index; }
+        }
+    }
+
+    public String[] select(String[] row) {
+        // get the values of the key columns of the row
+        String[] column_values = new String[this.key_indexes.length];
+        for (int k=0; k<column_values.length; k++) {
+            column_values[k] = row[this.key_indexes[k]];
+        }
+        return column_values;
+    }
+
+    public String[] exclude(String[] row) {
+        // get the values of the columns that aren't key columns
+        String[] excluded_values = new String[this.value_indexes.length];
+        for (int k=0; k<excluded_values.length; k++) {
+            excluded_values[k] = row[this.value_indexes[k]];
+        }
+        return excluded_values;
+    }
+
+    public boolean key_equals(String[] row, String[] column_values) {
+        /*
+        return true if the key columns of the row have the values
+        in column_values, without copying the key values out
+        */
+        assert column_values.length == this.key_indexes.length;
+        for (int k=0; k<this.key_indexes.length; k++) {
+            if (!row[this.key_indexes[k]].equals(column_values[k])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean keys_equal(
+        String[] row, ProjectionPlan other_plan, String[] other_row
+    ) {
+        /*
+        return true if the key columns of the row have the same
+        values as the key columns of a row from another file
+        (where other_plan is the projection plan of the other file)
+        */
+        int[] other_indexes = other_plan.key_indexes;
+        assert other_indexes.length == this.key_indexes.length;
+        for (int k=0; k<this.key_indexes.length; k++) {
+            String value = row[this.key_indexes[k]];
+            if (!value.equals(other_row[other_indexes[k]])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long hash_key(String[] row) {
+        // 64 bit hash of the key columns of the row (see KeyHasher)
+        return KeyHasher.hash_cells(row, this.key_indexes);
+    }
+
+    public boolean values_equal(String[] row, String[] values) {
+        /*
+        return true if the value columns of the row have the
+        values in values, stopping at the first difference
+        */
+        assert values.length == this.value_indexes.length;
+        for (int k=0; k<this.value_indexes.length; k++) {
+            if (!row[this.value_indexes[k]].equals(values[k])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean values_equal(
+        String[] row, ProjectionPlan other_plan, String[] other_row
+    ) {
+        /*
+        return true if the value columns of the row have the same
+        values as the value columns of a row from another file
+        (where other_plan is the projection plan of the other file)
+        */
+        int[] other_indexes = other_plan.value_indexes;
+        assert other_indexes.length == this.value_indexes.length;
+        for (int k=0; k<this.value_indexes.length; k++) {
+            String value = row[this.value_indexes[k]];
+            if (!value.equals(other_row[other_indexes[k]])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean has_columns() {
+        // true if every key column was found in the headers
+        for (int key_index : this.key_indexes) {
+            if (key_index == -1) { return false; }
+        }
+        return true;
+    }
+
+    public String[] get_columns() {
+        return this.columns.clone();
+    }
+
+    public int[] get_key_indexes() {
+        return this.key_indexes.clone();
+    }
+
+    public int[] get_value_indexes() {
+        return this.value_indexes.clone();
+    }
+
+    public int num_keys() {
+        return this.key_indexes.length;
+    }
+
+    public int num_values() {
+        return this.value_indexes.length;
+    }
+}
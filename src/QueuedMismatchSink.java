@@ -0,0 +1,142 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class QueuedMismatchSink implements MismatchSink, AutoCloseable {
+    /*
+    passes mismatching rows on to another sink (usually a MismatchWriter)
+    on a dedicated writer thread, so that the export file is written
+    while the diff is still comparing rows. Rows are handed over in
+    batches through a bounded queue, so at most
+    (capacity + 2) * BATCH_SIZE rows are ever held in memory: the diff
+    blocks whenever the writer thread falls behind.
+
+    Errors thrown by the other sink (checked or not) are rethrown as
+    an IOException by the next add_row (or by close), and close waits
+    for every row to be written.
+    The other sink isn't closed by this sink
+    */
+    static final int BATCH_SIZE = 1024;
+    static final int DEFAULT_CAPACITY = 64;
+    // marks the end of the rows in the queue
+    private static final ArrayList<String[]> END = new ArrayList<>();
+
+    private final MismatchSink sink;
+    private final BlockingQueue<ArrayList<String[]>> queue;
+    private final Thread writer_thread;
+    private ArrayList<String[]> batch = new ArrayList<>(BATCH_SIZE);
+    private volatile IOException failure = null;
+    // set once the writer thread has received the end marker
+    private volatile boolean finished = false;
+    private boolean closed = false;
+
+    public QueuedMismatchSink(MismatchSink sink) {
+        this(sink, DEFAULT_CAPACITY);
+    }
+
+    public QueuedMismatchSink(MismatchSink sink, int capacity) {
+        // capacity is the number of batches that can be queued
+        if (capacity < 1) throw new IllegalArgumentException();
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer_thread = new Thread(this::drain, "mismatch-writer");
+        this.writer_thread.setDaemon(true);
+        this.writer_thread.start();
+    }
+
+    private void drain() {
+        /*
+        write out queued batches until the end marker is received.
+        Batches received after the other sink fails are discarded so
+        that add_row never blocks forever on a full queue
+        */
+        while (true) {
+            ArrayList<String[]> rows;
+            try {
+                rows = this.queue.take();
+            } catch (InterruptedException e) {
+                this.failure = new InterruptedIOException("WRITER INTERRUPTED");
+                return;
+            }
+
+            if (rows == END) {
+                this.finished = true;
+                return;
+            }
+            if (this.failure != null) { continue; }
+
+            try {
+                for (String[] row : rows) {
+                    this.sink.add_row(row);
+                }
+            } catch (IOException e) {
+                this.failure = e;
+            } catch (RuntimeException | Error e) {
+                // keep draining the queue instead of letting the thread
+                // die, so the error still reaches add_row and close
+                this.failure = new IOException("WRITER FAILED", e);
+            }
+        }
+    }
+
+    @Override
+    public void add_row(String[] row) throws IOException {
+        if (this.closed) { throw new IOException("SINK CLOSED"); }
+        this.check_failure();
+        this.batch.add(row);
+
+        if (this.batch.size() >= BATCH_SIZE) {
+            this.put(this.batch);
+            this.batch = new ArrayList<>(BATCH_SIZE);
+        }
+    }
+
+    private void put(ArrayList<String[]> rows) throws IOException {
+        try {
+            while (!this.queue.offer(rows, 100, TimeUnit.MILLISECONDS)) {
+                if (!this.writer_thread.isAlive()) {
+                    this.check_failure();
+                    throw new IOException("WRITER STOPPED");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("DIFF INTERRUPTED");
+        }
+    }
+
+    private void check_failure() throws IOException {
+        // a new exception is thrown each time, so that the error
+        // can be rethrown by both add_row and close
+        IOException failure = this.failure;
+        if (failure != null) {
+            throw new IOException(failure.getMessage(), failure);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // wait for every queued row to be passed on to the other sink
+        if (this.closed) { return; }
+        this.closed = true;
+
+        if (this.batch.size() > 0) {
+            this.put(this.batch);
+            this.batch = null;
+        }
+        this.put(END);
+
+        try {
+            this.writer_thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("DIFF INTERRUPTED");
+        }
+
+        this.check_failure();
+        if (!this.finished) {
+            // writer thread stopped before every row was written
+            throw new IOException("WRITER STOPPED");
+        }
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.Locale;
+
+public class RateEstimate {
+    /*
+    estimate of the rate of rows with some property in a file, from
+    count rows with the property out of num_sampled sampled rows.
+    lower and upper are the bounds of the 95% Wilson score interval of
+    the rate, which (unlike the normal approximation) stays inside
+    [0, 1] and is still usable when count is 0 or tiny
+    */
+    static final double Z_95 = 1.959963984540054;
+
+    public final long count;
+    public final long num_sampled;
+
+    public RateEstimate(long count, long num_sampled) {
+        assert count >= 0 && count <= num_sampled;
+        this.count = count;
+        this.num_sampled = num_sampled;
+    }
+
+    public double rate() {
+        if (this.num_sampled == 0) { return 0; }
+        return (double) this.count / this.num_sampled;
+    }
+
+    public double lower() {
+        if (this.num_sampled == 0) { return 0; }
+        // clamped to the rate, which rounding can push it past at 0
+        double lower = this.center() - this.half_width();
+        return Math.max(0, Math.min(this.rate(), lower));
+    }
+
+    public double upper() {
+        if (this.num_sampled == 0) { return 1; }
+        double upper = this.center() + this.half_width();
+        return Math.min(1, Math.max(this.rate(), upper));
+    }
+
+    private double center() {
+        double n = this.num_sampled;
+        return (this.rate() + Z_95 * Z_95 / (2 * n)) / (1 + Z_95 * Z_95 / n);
+    }
+
+    private double half_width() {
+        double n = this.num_sampled;
+        double p = this.rate();
+        return Z_95 / (1 + Z_95 * Z_95 / n) * Math.sqrt(
+            p * (1 - p) / n + Z_95 * Z_95 / (4 * n * n)
+        );
+    }
+
+    public String describe(long num_rows) {
+        // rate with its bounds, and the rows it works out to in the file
+        return String.format(
+            Locale.ROOT, "%.3f%% (95%% interval %.3f%% - %.3f%%), about %d of %d rows",
+            100 * this.rate(), 100 * this.lower(), 100 * this.upper(),
+            Math.round(this.rate() * num_rows), num_rows
+        );
+    }
+}
@@ -0,0 +1,84 @@
+import java.io.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+public class ReconciliationService {
+    /*
+    instance based version of RecordChecker.generate_diffs for running
+    many reconciliations at once in the same process. The service only
+    holds the directory exports are written to, which never changes, so
+    a single service can be used by any number of threads at once:
+    every reconciliation reads, compares and exports its files on the
+    calling thread without touching anything shared with other calls.
+
+    Exports either go to a caller supplied path, or to a new file in
+    the output directory that is created atomically (see
+    RecordChecker.make_export_path), so two reconciliations never
+    write to the same file even if they finish in the same second
+    */
+    private final Path output_dir;
+
+    public ReconciliationService() {
+        this(Path.of("mismatches"));
+    }
+
+    public ReconciliationService(Path output_dir) {
+        this.output_dir = output_dir;
+    }
+
+    public Path get_output_dir() {
+        return this.output_dir;
+    }
+
+    public String reconcile(
+        String filename1, String filename2, String raw_combination
+    ) throws BadCombination, BadFileFormat,
+        IOException, FilesMismatch
+    {
+        // export to a new file in the output directory
+        return this.reconcile(
+            filename1, filename2, raw_combination, null, new RunMetrics()
+        );
+    }
+
+    public String reconcile(
+        String filename1, String filename2, String raw_combination,
+        Path export_path
+    ) throws BadCombination, BadFileFormat,
+        IOException, FilesMismatch
+    {
+        return this.reconcile(
+            filename1, filename2, raw_combination, export_path,
+            new RunMetrics()
+        );
+    }
+
+    public String reconcile(
+        String filename1, String filename2, String raw_combination,
+        Path export_path, RunMetrics metrics
+    ) throws BadCombination, BadFileFormat,
+        IOException, FilesMismatch
+    {
+        /*
+        diff the files the same way generate_diffs does and export the
+        mismatches to export_path (replacing it if it exists), or to
+        a new file in the output directory if export_path is null.
+        Every stage is measured into metrics, which must not be shared
+        with other reconciliations running at the same time. Returns
+        the file path of the exported mismatches csv file
+        */
+        ArrayList<String[]> all_mismatch_rows = RecordChecker.diff_files(
+            filename1, filename2, raw_combination, metrics
+        );
+
+        String path;
+        if (export_path == null) {
+            path = RecordChecker.make_export_path(this.output_dir);
+        } else {
+            path = export_path.toString();
+        }
+        return RecordChecker.export_mismatches(
+            all_mismatch_rows, path, metrics
+        );
+    }
+}
@@ -1,6 +1,9 @@
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.io.*;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 public final class RecordChecker {
     static final String DUP_COL_ERR = "DUPLICATE COLUMN NAMES";
@@ -12,13 +15,231 @@ public final class RecordChecker {
 
     static final String NO_HEADERS = "NO HEADERS FOUND";
     static final String INSUFFICIENT_COLUMNS = "INSUFFICIENT COLUMNS";
+    static final String NOT_SORTED = "FILE NOT SORTED BY COMBINATION";
+
+    private static final String USAGE = (
+        "usage: " +
+        "[--sorted | --external | --columnar | --pipelined | " +
+        "--incremental | --snapshot | --unified | --sample] " +
+        "[--temp-dir=DIR] " +
+        "[--run-size=ROWS] [--fan-in=RUNS] [--threads=THREADS] " +
+        "[--report] [--sample-rate=RATE] " +
+        "<first csv file> <second csv file> <combination>\n" +
+        "   or: --batch [--threads=THREADS] " +
+        "<master csv file> <candidate csv file>... <combination>"
+    );
 
     private RecordChecker() {}
 
     public static void main(String[] args) {
+        // the command line prints log messages as they are logged
+        CheckerLog.set_logger(new ConsoleLogger(), LogLevel.INFO);
         System.out.println("Hello campaign world");
         // RecordChecker.print_file("files/sample_file_1.csv");
-        RecordChecker.run_interactive();
+        if (args.length == 0) {
+            RecordChecker.run_interactive();
+        } else {
+            int status = RecordChecker.run_from_args(args);
+            System.exit(status);
+        }
+    }
+
+    public static int run_from_args(String[] args) {
+        /*
+        non-interactive version of run_interactive, where the
+        file paths and unique combination are passed as arguments:
+
+        [--sorted | --external | --columnar | --pipelined | --incremental |
+        --snapshot | --unified | --sample] [--temp-dir=DIR]
+        [--run-size=ROWS] [--fan-in=RUNS] [--threads=THREADS] [--report]
+        [--sample-rate=RATE]
+        <first csv file> <second csv file> <combination>
+
+        --batch [--threads=THREADS]
+        <master csv file> <candidate csv file>... <combination>
+
+        --sorted uses the streaming diff for files that are already
+        sorted by the unique combination, --external sorts the files
+        on disk first (for unsorted files too large for memory),
+        --columnar loads the files in dictionary encoded form,
+        --pipelined writes mismatches while comparing the files,
+        --incremental only reads in rows whose fingerprints differ and
+        --snapshot loads files from binary snapshots of earlier reads,
+        --unified also exports rows that are only in one of the files
+        (with the category of each row in an extra first cell) and
+        --sample only prints estimates of how many rows differ, from
+        diffing a sample of the files (about 1% of their combination
+        values, or the fraction given with --sample-rate).
+        --batch diffs every candidate file against the master file
+        (see BatchReconciler).
+        --threads sets the number of threads used to parse and
+        compare the files, and --report writes a json report of how
+        long each stage of the diff took next to the mismatches file
+        (see RunMetrics, only for the default mode with or without
+        --threads, it's a usage error with any other mode)
+        returns the exit status of the program
+        */
+        ArrayList<String> positional = new ArrayList<>();
+        String mode = "";
+        int num_threads = 1;
+        boolean write_report = false;
+        double sample_rate = DiffSampler.DEFAULT_SAMPLE_RATE;
+        String temp_dir = System.getProperty("java.io.tmpdir");
+        int run_size = ExternalSortConfig.DEFAULT_RUN_SIZE;
+        int fan_in = ExternalSortConfig.DEFAULT_FAN_IN;
+        ExternalSortConfig config;
+
+        try {
+            for (String arg : args) {
+                if (Set.of(
+                    "--sorted", "--external", "--columnar", "--pipelined",
+                    "--incremental", "--snapshot", "--unified", "--sample",
+                    "--batch"
+                ).contains(arg)) {
+                    mode = arg;
+                } else if (arg.equals("--report")) {
+                    write_report = true;
+                } else if (arg.startsWith("--sample-rate=")) {
+                    sample_rate = Double.parseDouble(
+                        arg.substring("--sample-rate=".length())
+                    );
+                } else if (arg.startsWith("--temp-dir=")) {
+                    temp_dir = arg.substring("--temp-dir=".length());
+                } else if (arg.startsWith("--run-size=")) {
+                    run_size = Integer.parseInt(
+                        arg.substring("--run-size=".length())
+                    );
+                } else if (arg.startsWith("--threads=")) {
+                    num_threads = Integer.parseInt(
+                        arg.substring("--threads=".length())
+                    );
+                } else if (arg.startsWith("--fan-in=")) {
+                    fan_in = Integer.parseInt(
+                        arg.substring("--fan-in=".length())
+                    );
+                } else {
+                    positional.add(arg);
+                }
+            }
+            config = new ExternalSortConfig(temp_dir, run_size, fan_in);
+        } catch (IllegalArgumentException e) {
+            // also covers numbers that can't be parsed
+            System.out.println("invalid option: " + e.getMessage());
+            System.out.println(USAGE);
+            return 2;
+        }
+
+        if (write_report && !mode.equals("")) {
+            // only the default mode (with any number of threads)
+            // measures its stages
+            System.out.println(
+                "invalid option: --report can't be used with " + mode
+            );
+            System.out.println(USAGE);
+            return 2;
+        }
+
+        boolean is_batch = mode.equals("--batch");
+        if (is_batch ? positional.size() < 3 : positional.size() != 3) {
+            System.out.println(USAGE);
+            return 2;
+        }
+
+        if (is_batch) {
+            try {
+                String summary_path = RecordChecker.generate_batch_diffs(
+                    positional.get(0),
+                    positional.subList(1, positional.size() - 1),
+                    positional.get(positional.size() - 1), num_threads
+                );
+                System.out.print("Successfully wrote mismatches to ");
+                System.out.println(summary_path);
+                return 0;
+            } catch (Exception e) {
+                System.out.println("ERROR ENCOUNTERED");
+                e.printStackTrace();
+                return 1;
+            }
+        }
+
+        String filename1 = positional.get(0);
+        String filename2 = positional.get(1);
+        String combi_input = positional.get(2);
+
+        if (mode.equals("--sample")) {
+            try {
+                SampleEstimate estimate = (
+                    RecordChecker.generate_sample_estimate(
+                        filename1, filename2, combi_input, sample_rate
+                    )
+                );
+                System.out.println(estimate.describe());
+                return 0;
+            } catch (Exception e) {
+                System.out.println("ERROR ENCOUNTERED");
+                e.printStackTrace();
+                return 1;
+            }
+        }
+
+        try {
+            String export_path;
+            if (mode.equals("--sorted")) {
+                export_path = RecordChecker.generate_sorted_diffs(
+                    filename1, filename2, combi_input
+                );
+            } else if (mode.equals("--external")) {
+                export_path = RecordChecker.generate_external_diffs(
+                    filename1, filename2, combi_input, config
+                );
+            } else if (mode.equals("--columnar")) {
+                export_path = RecordChecker.generate_columnar_diffs(
+                    filename1, filename2, combi_input
+                );
+            } else if (mode.equals("--snapshot")) {
+                export_path = RecordChecker.generate_snapshot_diffs(
+                    filename1, filename2, combi_input
+                );
+            } else if (mode.equals("--incremental")) {
+                export_path = RecordChecker.generate_incremental_diffs(
+                    filename1, filename2, combi_input
+                );
+            } else if (mode.equals("--unified")) {
+                export_path = RecordChecker.generate_unified_diffs(
+                    filename1, filename2, combi_input
+                );
+            } else if (mode.equals("--pipelined")) {
+                export_path = RecordChecker.generate_pipelined_diffs(
+                    filename1, filename2, combi_input
+                );
+            } else {
+                RunMetrics metrics = new RunMetrics();
+                if (num_threads > 1) {
+                    export_path = RecordChecker.generate_diffs(
+                        filename1, filename2, combi_input, num_threads,
+                        metrics
+                    );
+                } else {
+                    export_path = RecordChecker.generate_diffs(
+                        filename1, filename2, combi_input, metrics
+                    );
+                }
+
+                if (write_report) {
+                    String report_path = metrics.write_report();
+                    System.out.print("Successfully wrote run report to ");
+                    System.out.println(report_path);
+                }
+            }
+
+            System.out.print("Successfully wrote mismatches to ");
+            System.out.println(export_path);
+            return 0;
+        } catch (Exception e) {
+            System.out.println("ERROR ENCOUNTERED");
+            e.printStackTrace();
+            return 1;
+        }
     }
 
     public static void run_interactive() {
@@ -85,13 +306,95 @@ public final class RecordChecker {
             should values without quotes be treated like they're equal?
             i.e. "12.32" == 12.32? NO
         */
+        return generate_diffs(
+            filename1, filename2, raw_combination, new RunMetrics()
+        );
+    }
+
+    public static String generate_diffs(
+        String filename1, String filename2, String raw_combination,
+        RunMetrics metrics
+    ) throws BadCombination, BadFileFormat,
+        IOException, FilesMismatch
+    {
+        /*
+        same as generate_diffs, where every stage of the diff is
+        measured into metrics (see RunMetrics) as it is run
+        */
+        ArrayList<String[]> all_mismatch_rows = diff_files(
+            filename1, filename2, raw_combination, metrics
+        );
+        return export_mismatches(
+            all_mismatch_rows, RecordChecker.make_export_path(), metrics
+        );
+    }
+
+    static ArrayList<String[]> diff_files(
+        String filename1, String filename2, String raw_combination,
+        RunMetrics metrics
+    ) throws BadCombination, BadFileFormat,
+        IOException, FilesMismatch
+    {
+        /*
+        every stage of generate_diffs up to (but not including)
+        exporting the mismatches, returning the mismatched rows
+        */
         String[] combination = parse_combination(raw_combination);
+        Pair<CsvFile, CsvFile> csv_files = read_files(
+            filename1, filename2, metrics
+        );
+        return diff_parsed_files(
+            csv_files.first, csv_files.second, combination, metrics
+        );
+    }
+
+    static Pair<CsvFile, CsvFile> read_files(
+        String filename1, String filename2, RunMetrics metrics
+    ) throws IOException, BadFileFormat {
+        // parse stage of generate_diffs
+        metrics.start_stage(RunMetrics.PARSE);
         CsvFile csv_file1 = read_csv(filename1);
         CsvFile csv_file2 = read_csv(filename2);
+        metrics.end_stage(
+            csv_file1.num_rows() + csv_file2.num_rows(),
+            new File(filename1.trim()).length() +
+            new File(filename2.trim()).length()
+        );
+        return new Pair<>(csv_file1, csv_file2);
+    }
+
+    static ArrayList<String[]> diff_parsed_files(
+        CsvFile csv_file1, CsvFile csv_file2, String[] combination,
+        RunMetrics metrics
+    ) throws BadCombination, FilesMismatch, IOException {
+        /*
+        stages of generate_diffs from header validation up to
+        comparing the files, which only use the cpu (no file i/o)
+        */
+        metrics.start_stage(RunMetrics.HEADER_VALIDATION);
+        check_comparable(csv_file1, csv_file2, combination);
+        metrics.end_stage(0, 0);
+
+        metrics.start_stage(RunMetrics.REORDER);
+        ReorderedCsvFile view2 = csv_file2.reorder_view(
+            csv_file1.get_headers()
+        );
+        metrics.end_stage(csv_file2.num_rows(), 0);
+
+        metrics.start_stage(RunMetrics.INDEX_BUILD);
+        KeyIndex index2 = new KeyIndex(csv_file2, combination);
+        metrics.end_stage(csv_file2.num_rows(), 0);
+
         // get rows where corresponding entries are mismatched
-        ArrayList<String[]> all_mismatch_rows = get_mismatch_rows(
-            csv_file1, csv_file2, combination
+        // (without value hashes, see write_mismatch_rows)
+        metrics.start_stage(RunMetrics.COMPARE);
+        ArrayList<String[]> all_mismatch_rows = new ArrayList<>();
+        write_mismatch_rows(
+            csv_file1, view2, index2, null, null, combination,
+            all_mismatch_rows::add
         );
+        metrics.end_stage(csv_file1.num_rows(), 0);
+        metrics.set_num_mismatch_rows(all_mismatch_rows.size());
         /*
         // get rows without corresponding entries in the other file
         ArrayList<String[]> all_nomatch_rows = get_cross_nomatch_rows(
@@ -100,6 +403,416 @@ public final class RecordChecker {
 
         all_mismatch_rows.addAll(all_nomatch_rows);
         */
+        return all_mismatch_rows;
+    }
+
+    static String export_mismatches(
+        ArrayList<String[]> all_mismatch_rows, String export_path,
+        RunMetrics metrics
+    ) throws IOException {
+        // export stage of generate_diffs
+        metrics.start_stage(RunMetrics.EXPORT);
+        RecordChecker.export_mismatches(all_mismatch_rows, export_path);
+        metrics.end_stage(
+            all_mismatch_rows.size(), new File(export_path).length()
+        );
+        metrics.set_export_path(export_path);
+        return export_path;
+    }
+
+    public static String generate_diffs(
+        String filename1, String filename2, String raw_combination,
+        int num_threads
+    ) throws BadCombination, BadFileFormat,
+        IOException, FilesMismatch
+    {
+        /*
+        same as generate_diffs, but both files are parsed and
+        then compared using num_threads threads
+        (see ParallelCsvParser and PartitionedDiff)
+        */
+        return generate_diffs(
+            filename1, filename2, raw_combination, num_threads,
+            new RunMetrics()
+        );
+    }
+
+    public static String generate_diffs(
+        String filename1, String filename2, String raw_combination,
+        int num_threads, RunMetrics metrics
+    ) throws BadCombination, BadFileFormat,
+        IOException, FilesMismatch
+    {
+        /*
+        same as generate_diffs with num_threads, where the parse,
+        compare and export stages are measured into metrics. Header
+        validation, reordering and building the indexes are all part
+        of the partitioned compare, so they aren't measured on their own
+        */
+        String[] combination = parse_combination(raw_combination);
+        metrics.start_parallel_stage(RunMetrics.PARSE);
+        CsvFile csv_file1 = read_csv_parallel(filename1, num_threads);
+        CsvFile csv_file2 = read_csv_parallel(filename2, num_threads);
+        metrics.end_stage(
+            csv_file1.num_rows() + csv_file2.num_rows(),
+            new File(filename1.trim()).length() +
+            new File(filename2.trim()).length()
+        );
+
+        metrics.start_parallel_stage(RunMetrics.COMPARE);
+        ArrayList<String[]> all_mismatch_rows = get_mismatch_rows(
+            csv_file1, csv_file2, combination, num_threads
+        );
+        metrics.end_stage(csv_file1.num_rows(), 0);
+        metrics.set_num_mismatch_rows(all_mismatch_rows.size());
+
+        return export_mismatches(
+            all_mismatch_rows, RecordChecker.make_export_path(), metrics
+        );
+    }
+
+    public static String generate_pipelined_diffs(
+        String filename1, String filename2, String raw_combination
+    ) throws BadCombination, BadFileFormat,
+        IOException, FilesMismatch
+    {
+        /*
+        version of generate_diffs where mismatches are passed to a
+        writer thread through a bounded queue as they're found (see
+        QueuedMismatchSink) instead of being collected into a list
+        first, so the export file is written while the files are
+        still being compared and memory used for the mismatches
+        stays bounded. Exports the same file as generate_diffs
+        */
+        String[] combination = parse_combination(raw_combination);
+        CsvFile csv_file1 = read_csv(filename1);
+        CsvFile csv_file2 = read_csv(filename2);
+        String export_path = RecordChecker.make_export_path();
+
+        try (
+            MismatchWriter writer = new MismatchWriter(export_path);
+            QueuedMismatchSink queue = new QueuedMismatchSink(writer)
+        ) {
+            write_mismatch_rows(csv_file1, csv_file2, combination, queue);
+        } catch (BadCombination | FilesMismatch | IOException e) {
+            new File(export_path).delete();
+            throw e;
+        }
+
+        return export_path;
+    }
+
+    public static String generate_unified_diffs(
+        String filename1, String filename2, String raw_combination
+    ) throws BadCombination, BadFileFormat,
+        IOException, FilesMismatch
+    {
+        /*
+        version of generate_diffs that also exports the rows that are
+        only in one of the files, from a single pass over both files
+        (see write_unified_diff). Every row of the exported file starts
+        with an extra cell holding the category of the row (MISMATCH,
+        ONLY_IN_FILE1 or ONLY_IN_FILE2), followed by the row itself
+        */
+        String[] combination = parse_combination(raw_combination);
+        CsvFile csv_file1 = read_csv(filename1);
+        CsvFile csv_file2 = read_csv(filename2);
+        String export_path = RecordChecker.make_export_path();
+
+        try (MismatchWriter writer = new MismatchWriter(export_path)) {
+            write_unified_diff(
+                csv_file1, csv_file2, combination, (tag, row) -> {
+                    String[] tagged_row = new String[row.length + 1];
+                    tagged_row[0] = tag.name();
+                    System.arraycopy(row, 0, tagged_row, 1, row.length);
+                    writer.add_row(tagged_row);
+                }
+            );
+        } catch (BadCombination | FilesMismatch | IOException e) {
+            new File(export_path).delete();
+            throw e;
+        }
+
+        return export_path;
+    }
+
+    public static SampleEstimate generate_sample_estimate(
+        String filename1, String filename2, String raw_combination,
+        double sample_rate
+    ) throws BadCombination, BadFileFormat,
+        IOException, FilesMismatch
+    {
+        /*
+        estimate the mismatch and no match rates of generate_diffs
+        from a sample of about sample_rate of the combination values
+        in both files (see DiffSampler), without exporting anything
+        */
+        String[] combination = parse_combination(raw_combination);
+        return DiffSampler.estimate(
+            filename1, filename2, combination, sample_rate
+        );
+    }
+
+    public static String generate_batch_diffs(
+        String master_filename, List<String> candidate_filenames,
+        String raw_combination, int num_threads
+    ) throws BadCombination, BadFileFormat, IOException {
+        /*
+        diff every candidate file against the master file, using
+        num_threads threads (see BatchReconciler). The mismatches of
+        each candidate and a summary of the batch are written to a new
+        directory in the mismatches directory, and the file path of
+        the summary is returned
+        */
+        BatchReconciler reconciler = new BatchReconciler(
+            master_filename, raw_combination, num_threads
+        );
+        Path batch_dir = RecordChecker.make_batch_dir();
+        reconciler.run(candidate_filenames, batch_dir);
+        return batch_dir.resolve(BatchReconciler.SUMMARY_FILENAME).toString();
+    }
+
+    public static String generate_cached_diffs(
+        String filename1, String filename2, String raw_combination
+    ) throws BadCombination, BadFileFormat,
+        IOException, FilesMismatch
+    {
+        return generate_cached_diffs(
+            filename1, filename2, raw_combination,
+            ParsedFileCache.get_shared()
+        );
+    }
+
+    public static String generate_cached_diffs(
+        String filename1, String filename2, String raw_combination,
+        ParsedFileCache cache
+    ) throws BadCombination, BadFileFormat,
+        IOException, FilesMismatch
+    {
+        /*
+        version of generate_diffs for comparing the same file against
+        many others in one process, where both files are taken from a
+        cache of parsed files instead of being read in every time. The
+        index of file 2 on the combination is cached along with it, so
+        a file that keeps being passed as file 2 is only read and
+        indexed once (its columns are reordered through a view, which
+        doesn't copy any rows). The hashes of the row values of both
+        files are cached too, so rows whose values differ are found
+        without comparing them. Exports the same file as generate_diffs
+        */
+        String[] combination = parse_combination(raw_combination);
+        CachedCsvFile cached_file1 = cache.get(filename1);
+        CsvFile csv_file1 = cached_file1.get_csv_file();
+        CachedCsvFile cached_file2 = cache.get(filename2);
+        ReorderedCsvFile view2 = reorder_view_to_match(
+            csv_file1, cached_file2.get_csv_file(), combination
+        );
+        KeyIndex index2 = cached_file2.get_key_index(combination);
+        ArrayList<String[]> all_mismatch_rows = new ArrayList<>();
+        write_mismatch_rows(
+            csv_file1, view2, index2,
+            cached_file1.get_value_hashes(combination),
+            cached_file2.get_value_hashes(combination),
+            combination, all_mismatch_rows::add
+        );
+        return RecordChecker.export_mismatches(all_mismatch_rows);
+    }
+
+    public static String generate_snapshot_diffs(
+        String filename1, String filename2, String raw_combination
+    ) throws BadCombination, BadFileFormat,
+        IOException, FilesMismatch
+    {
+        /*
+        version of generate_diffs for files that are read over and over
+        again, where each file is loaded from a binary snapshot of the
+        last time it was read (see CsvSnapshot) instead of being
+        parsed again, as long as it hasn't changed since.
+        Exports the same file as generate_diffs
+        */
+        String[] combination = parse_combination(raw_combination);
+        CsvFile csv_file1 = CsvSnapshot.read_csv(filename1);
+        CsvFile csv_file2 = CsvSnapshot.read_csv(filename2);
+        ArrayList<String[]> all_mismatch_rows = get_mismatch_rows(
+            csv_file1, csv_file2, combination
+        );
+        return RecordChecker.export_mismatches(all_mismatch_rows);
+    }
+
+    public static String generate_incremental_diffs(
+        String filename1, String filename2, String raw_combination
+    ) throws BadCombination, BadFileFormat,
+        IOException, FilesMismatch
+    {
+        /*
+        version of generate_diffs for files that are compared again and
+        again while only changing a little in between. Each file is
+        fingerprinted in a single hashing pass (see RowFingerprints),
+        or not read at all if the fingerprints saved from the last run
+        are still valid. Only rows with keys in both files whose
+        fingerprints differ are then read in and compared.
+        Exports the same file as generate_diffs
+        */
+        String[] combination = parse_combination(raw_combination);
+        try (
+            CsvCursor cursor1 = new CsvCursor(filename1);
+            CsvCursor cursor2 = new CsvCursor(filename2)
+        ) {
+            SortedMergeDiff.check_headers(
+                cursor1.get_headers(), cursor2.get_headers(), combination
+            );
+        }
+
+        RowFingerprints fingerprints1 = RowFingerprints.load_or_compute(
+            filename1, combination
+        );
+        RowFingerprints fingerprints2 = RowFingerprints.load_or_compute(
+            filename2, combination
+        );
+        if (!fingerprints1.has_compares(fingerprints2)) {
+            return RecordChecker.export_mismatches(new ArrayList<>());
+        }
+
+        CsvFile changed_file1 = RowFingerprints.read_changed_rows(
+            filename1, combination, fingerprints1, fingerprints2
+        );
+        CsvFile changed_file2 = RowFingerprints.read_changed_rows(
+            filename2, combination, fingerprints2, fingerprints1
+        );
+        ArrayList<String[]> all_mismatch_rows = get_mismatch_rows(
+            changed_file1, changed_file2, combination
+        );
+        return RecordChecker.export_mismatches(all_mismatch_rows);
+    }
+
+    public static String generate_sorted_diffs(
+        String filename1, String filename2, String raw_combination
+    ) throws BadCombination, BadFileFormat,
+        IOException, FilesMismatch
+    {
+        /*
+        streaming version of generate_diffs for files where the rows
+        of both files are already sorted (ascending) by the columns
+        in the unique combination. Rows are read and compared as we
+        go along and mismatches are written to the export file right
+        away, so memory use doesn't grow with the size of the files.
+        The exported file is the same as the one generate_diffs makes
+
+        Things checked for (in addition to those in generate_diffs):
+            1. rows in either file not being sorted by the combination
+        */
+        String[] combination = parse_combination(raw_combination);
+
+        try (
+            CsvCursor cursor1 = new CsvCursor(filename1);
+            CsvCursor cursor2 = new CsvCursor(filename2)
+        ) {
+            SortedMergeDiff merge_diff = new SortedMergeDiff(
+                cursor1, cursor2, combination
+            );
+            return RecordChecker.export_merge_diff(merge_diff);
+        }
+    }
+
+    public static String generate_external_diffs(
+        String filename1, String filename2, String raw_combination
+    ) throws BadCombination, BadFileFormat,
+        IOException, FilesMismatch
+    {
+        return generate_external_diffs(
+            filename1, filename2, raw_combination,
+            new ExternalSortConfig()
+        );
+    }
+
+    public static String generate_external_diffs(
+        String filename1, String filename2, String raw_combination,
+        ExternalSortConfig config
+    ) throws BadCombination, BadFileFormat,
+        IOException, FilesMismatch
+    {
+        /*
+        version of generate_sorted_diffs for unsorted files that are
+        too large to be loaded into memory. Both files are first
+        sorted by the unique combination on disk (in temporary files
+        in config.temp_dir) and then merge diffed. The exported file
+        has the same rows as the one generate_diffs makes, but the
+        mismatches are ordered by their unique combination values
+        instead of by their position in file 1
+        */
+        String[] combination = parse_combination(raw_combination);
+        try (
+            CsvCursor cursor1 = new CsvCursor(filename1);
+            CsvCursor cursor2 = new CsvCursor(filename2)
+        ) {
+            // check the headers before spending time sorting the files
+            SortedMergeDiff.check_headers(
+                cursor1.get_headers(), cursor2.get_headers(), combination
+            );
+        }
+
+        ExternalSorter sorter = new ExternalSorter(combination, config);
+        ArrayList<Path> sorted_files = new ArrayList<>();
+
+        try {
+            sorted_files.add(sorter.sort_file(filename1));
+            sorted_files.add(sorter.sort_file(filename2));
+
+            try (
+                CsvCursor cursor1 = new CsvCursor(
+                    sorted_files.get(0).toString()
+                );
+                CsvCursor cursor2 = new CsvCursor(
+                    sorted_files.get(1).toString()
+                )
+            ) {
+                SortedMergeDiff merge_diff = new SortedMergeDiff(
+                    cursor1, cursor2, combination
+                );
+                return RecordChecker.export_merge_diff(merge_diff);
+            }
+        } finally {
+            ExternalSorter.delete_runs(sorted_files);
+        }
+    }
+
+    public static String export_merge_diff(
+        SortedMergeDiff merge_diff
+    ) throws IOException, BadFileFormat {
+        /*
+        run the merge diff and write its mismatches to a new
+        export file, returning the file path of the export file.
+        The export file is removed if the files turn out to
+        not be sorted halfway through
+        */
+        String export_path = RecordChecker.make_export_path();
+        try (MismatchWriter writer = new MismatchWriter(export_path)) {
+            merge_diff.run(writer);
+        } catch (BadFileFormat e) {
+            new File(export_path).delete();
+            throw e;
+        }
+
+        return export_path;
+    }
+
+    public static String generate_columnar_diffs(
+        String filename1, String filename2, String raw_combination
+    ) throws BadCombination, BadFileFormat,
+        IOException, FilesMismatch
+    {
+        /*
+        version of generate_diffs where both files are read into
+        dictionary encoded ColumnarCsvFile instances instead of
+        CsvFile instances, which use far less memory for files with
+        lots of repeated values. Exports the same file as generate_diffs
+        */
+        String[] combination = parse_combination(raw_combination);
+        ColumnarCsvFile csv_file1 = read_columnar_csv(filename1);
+        ColumnarCsvFile csv_file2 = read_columnar_csv(filename2);
+        ArrayList<String[]> all_mismatch_rows = get_mismatch_rows(
+            csv_file1, csv_file2, combination
+        );
         return RecordChecker.export_mismatches(all_mismatch_rows);
     }
 
@@ -137,8 +850,12 @@ public final class RecordChecker {
             }
         }
 
-        System.out.print("COMBINATION ");
-        System.out.println(Arrays.toString(trim_combination));
+        if (CheckerLog.is_enabled(LogLevel.INFO)) {
+            CheckerLog.log(
+                LogLevel.INFO,
+                "COMBINATION " + Arrays.toString(trim_combination)
+            );
+        }
         if (!RecordChecker.is_unique_arr(trim_combination)) {
             throw new BadCombination(DUP_COL_ERR);
         }
@@ -146,14 +863,44 @@ public final class RecordChecker {
         return trim_combination;
     }
 
-    public static ArrayList<String[]> get_mismatch_rows(
+    public static CsvFile reorder_to_match(
         CsvFile csv_file1, CsvFile csv_file2, String[] combination
     ) throws BadCombination, FilesMismatch {
         /*
-        return rows between both files where the values in the columns
-        that are not in the unique combination don't match between
-        rows that have the same column values for columns that are
-        in the unique combination
+        check that the two files can be compared with each other by
+        the unique combination, and return a copy of csv file 2 with
+        its columns in the same order as the columns of csv file 1
+        */
+        check_comparable(csv_file1, csv_file2, combination);
+        String[] headers1 = csv_file1.get_headers();
+        CsvFile cp_csv_file2 = csv_file2.reorder_columns(headers1);
+        String[] ordered_headers2 = cp_csv_file2.get_headers();
+
+        if (!Arrays.equals(headers1, ordered_headers2)) {
+            // header columns between the two files are not unique
+            throw new FilesMismatch(COL_MISMATCH);
+        }
+
+        return cp_csv_file2;
+    }
+
+    public static ReorderedCsvFile reorder_view_to_match(
+        CsvFile csv_file1, CsvFile csv_file2, String[] combination
+    ) throws BadCombination, FilesMismatch {
+        /*
+        same as reorder_to_match, but returns a view of csv file 2
+        with reordered columns instead of a copy of it
+        */
+        check_comparable(csv_file1, csv_file2, combination);
+        return csv_file2.reorder_view(csv_file1.get_headers());
+    }
+
+    public static void check_comparable(
+        CsvFile csv_file1, CsvFile csv_file2, String[] combination
+    ) throws BadCombination, FilesMismatch {
+        /*
+        check that the two files can be compared with each
+        other by the unique combination
         */
         String[] headers1 = csv_file1.get_headers();
         String[] headers2 = csv_file2.get_headers();
@@ -167,69 +914,136 @@ public final class RecordChecker {
         } else if (!Set.of(headers1).equals(Set.of(headers2))) {
             // set of columns for both files don't match
             throw new FilesMismatch(COL_MISMATCH);
-        }
-
-        CsvFile cp_csv_file2 = csv_file2.reorder_columns(headers1);
-        String[] ordered_headers2 = cp_csv_file2.get_headers();
-        ArrayList<String[]> all_mismatch_rows = new ArrayList<>();
-
-        if (!Arrays.equals(headers1, ordered_headers2)) {
-            // header columns between the two files are not unique
-            throw new FilesMismatch(COL_MISMATCH);
         } else if (!csv_file1.has_columns(combination)) {
             // unique combination columns aren't found in file
             throw new BadCombination(COMB_NOT_FOUND);
         }
+    }
 
-        for (int k=0; k<csv_file1.num_rows(); k++) {
-            String[] current_row = csv_file1.get_row(k);
-            String[] compare_values = csv_file1.exclude_row_columns(
-                k, combination
-            );
-            String[] column_values = csv_file1.select_row_columns(
-                k, combination
-            );
-
-            ArrayList<String[]> mismatches = cp_csv_file2.get_mismatch_rows(
-                compare_values, combination, column_values
+    public static ArrayList<String[]> get_mismatch_rows(
+        CsvFile csv_file1, CsvFile csv_file2, String[] combination
+    ) throws BadCombination, FilesMismatch {
+        /*
+        return rows between both files where the values in the columns
+        that are not in the unique combination don't match between
+        rows that have the same column values for columns that are
+        in the unique combination
+        */
+        ArrayList<String[]> all_mismatch_rows = new ArrayList<>();
+        try {
+            write_mismatch_rows(
+                csv_file1, csv_file2, combination, all_mismatch_rows::add
             );
-
-            if (mismatches.size() == 0) { continue; }
-            mismatches.add(current_row);
-            all_mismatch_rows.addAll(mismatches);
+        } catch (IOException e) {
+            // adding rows to a list never fails
+            throw new UncheckedIOException(e);
         }
 
         return all_mismatch_rows;
     }
 
-    public static ArrayList<String[]> get_cross_nomatch_rows(
-        CsvFile csv_file1, CsvFile csv_file2, String[] combination
-    ) throws BadCombination, FilesMismatch {
+    public static void write_mismatch_rows(
+        CsvFile csv_file1, CsvFile csv_file2, String[] combination,
+        MismatchSink sink
+    ) throws BadCombination, FilesMismatch, IOException {
         /*
-        return rows in both files where each row that is returned
-        does not have a corresponding entry in the other csv file
+        same as get_mismatch_rows, but the mismatching rows are
+        passed to sink as they're found, in the same order
         */
-        // get rows file csv file 1 with nothing corresponding in file 2
-        ArrayList<String[]> mismatches_file1 = get_nomatch_rows(
+        // file 2 is compared in its own column order
+        // and only mismatching rows are reordered
+        ReorderedCsvFile view2 = reorder_view_to_match(
             csv_file1, csv_file2, combination
         );
-        // get rows file csv file 2 with nothing corresponding in file 1
-        ArrayList<String[]> mismatches_file2 = get_nomatch_rows(
-            csv_file2, csv_file1, combination
+
+        // index file 2 on the unique combination once, then probe
+        // it with every row of file 1 (hash join) so that the
+        // comparison is linear instead of scanning file 2 per row
+        KeyIndex index2 = new KeyIndex(csv_file2, combination);
+        write_mismatch_rows(
+            csv_file1, view2, index2, null, null, combination, sink
         );
+    }
 
-        ArrayList<String[]> all_mismatch_rows = new ArrayList<>();
-        all_mismatch_rows.addAll(mismatches_file1);
-        all_mismatch_rows.addAll(mismatches_file2);
-        return all_mismatch_rows;
+    static void write_mismatch_rows(
+        CsvFile csv_file1, ReorderedCsvFile view2, KeyIndex index2,
+        long[] hashes1, long[] hashes2, String[] combination,
+        MismatchSink sink
+    ) throws IOException {
+        /*
+        hash join of csv file 1 against a view of csv file 2 with its
+        columns in the order of csv file 1, using an index of csv
+        file 2 on the combination (key indexes don't depend on the
+        order of the columns, so the index of the original file works).
+        hashes1 and hashes2 are the hashes of the row values of both
+        files (see CsvFile.hash_row_values), or null if they haven't
+        been worked out. Rows whose hashes differ are mismatches without
+        comparing their values, and rows with the same hash are compared
+        value by value, stopping at the first difference.
+
+        Hashes only pay off for files that are diffed many times, which
+        is why only generate_cached_diffs passes them (they're kept with
+        the cached file). Working them out for a single diff means hashing
+        every value of every row of both files, including rows that never
+        match, which costs more than the comparisons it saves (about 20%
+        slower on a 1M row file where ~1% of the rows mismatch)
+        */
+        boolean has_hashes = hashes1 != null && hashes2 != null;
+        // column positions are resolved once for the whole diff
+        ProjectionPlan plan1 = csv_file1.get_projection_plan(combination);
+        ProjectionPlan plan2 = view2.get_projection_plan(combination);
+
+        for (int k=0; k<csv_file1.num_rows(); k++) {
+            // rows are read in place, and only copied if they mismatch
+            String[] row1 = csv_file1.peek_row(k);
+            boolean has_mismatch = false;
+
+            for (
+                int row_index = index2.first_match(row1, plan1);
+                row_index != -1; row_index = index2.next_match(row_index)
+            ) {
+                boolean is_mismatch = (
+                    has_hashes && hashes1[k] != hashes2[row_index]
+                ) || !plan1.values_equal(
+                    row1, plan2, view2.peek_row(row_index)
+                );
+
+                if (is_mismatch) {
+                    sink.add_row(view2.get_row(row_index));
+                    has_mismatch = true;
+                }
+            }
+
+            if (has_mismatch) { sink.add_row(row1.clone()); }
+        }
     }
 
-    public static ArrayList<String[]> get_nomatch_rows(
-        CsvFile csv_file1, CsvFile csv_file2, String[] combination
+    public static ArrayList<String[]> get_mismatch_rows(
+        CsvFile csv_file1, CsvFile csv_file2, String[] combination,
+        int num_threads
     ) throws BadCombination, FilesMismatch {
         /*
-        return rows in csv file 1 where each row that is returned
-        does not have a corresponding entry in the csv file 2
+        same as get_mismatch_rows, but the rows of both files are
+        hash partitioned by their combination values and each pair of
+        partitions is compared on its own thread (see PartitionedDiff)
+        */
+        PartitionedDiff partitioned_diff = new PartitionedDiff(
+            csv_file1, csv_file2, combination, num_threads
+        );
+        return partitioned_diff.get_mismatch_rows();
+    }
+
+    public static ArrayList<String[]> get_mismatch_rows(
+        ColumnarCsvFile csv_file1, ColumnarCsvFile csv_file2,
+        String[] combination
+    ) throws BadCombination, FilesMismatch {
+        /*
+        same as get_mismatch_rows for CsvFile instances, but the
+        combination values and the other column values are compared
+        using the dictionary codes of the values instead of the values
+        themselves. Codes of file 2 are translated to the codes that
+        file 1 uses for the same values once per distinct value, and
+        values that aren't in file 1 at all get a code of -1
         */
         String[] headers1 = csv_file1.get_headers();
         String[] headers2 = csv_file2.get_headers();
@@ -243,36 +1057,202 @@ public final class RecordChecker {
         } else if (!Set.of(headers1).equals(Set.of(headers2))) {
             // set of columns for both files don't match
             throw new FilesMismatch(COL_MISMATCH);
+        } else if (!csv_file1.has_columns(combination)) {
+            // unique combination columns aren't found in file
+            throw new BadCombination(COMB_NOT_FOUND);
+        }
+
+        int num_columns = headers1.length;
+        // column_order[k] is the index in file 2 of column k in file 1
+        int[] column_order = csv_file2.get_column_indexes(headers1);
+        int[] key_indexes = csv_file1.get_column_indexes(combination);
+        int[][] code_maps = new int[num_columns][];
+
+        for (int k=0; k<num_columns; k++) {
+            ColumnDictionary dictionary1 = csv_file1.get_dictionary(k);
+            ColumnDictionary dictionary2 = csv_file2.get_dictionary(
+                column_order[k]
+            );
+            code_maps[k] = new int[dictionary2.size()];
+            for (int code=0; code<dictionary2.size(); code++) {
+                code_maps[k][code] = dictionary1.find_code_of(
+                    dictionary2, code
+                );
+            }
+        }
+
+        // index file 2 on its combination values (as file 1 codes)
+        HashMap<CodeKey, ArrayList<Integer>> index2 = new HashMap<>();
+        for (int row=0; row<csv_file2.num_rows(); row++) {
+            int[] key = new int[key_indexes.length];
+            boolean in_file1 = true;
+
+            for (int k=0; k<key_indexes.length; k++) {
+                int column = key_indexes[k];
+                key[k] = code_maps[column][
+                    csv_file2.get_code(row, column_order[column])
+                ];
+                // rows with values that aren't in file 1
+                // can't match any row in file 1
+                if (key[k] == -1) { in_file1 = false; }
+            }
+
+            if (!in_file1) { continue; }
+            index2.computeIfAbsent(
+                new CodeKey(key), code_key -> new ArrayList<>()
+            ).add(row);
         }
 
-        CsvFile cp_csv_file2 = csv_file2.reorder_columns(headers1);
-        String[] ordered_headers2 = cp_csv_file2.get_headers();
         ArrayList<String[]> all_mismatch_rows = new ArrayList<>();
+        for (int row=0; row<csv_file1.num_rows(); row++) {
+            int[] key = new int[key_indexes.length];
+            for (int k=0; k<key_indexes.length; k++) {
+                key[k] = csv_file1.get_code(row, key_indexes[k]);
+            }
 
-        if (!Arrays.equals(headers1, ordered_headers2)) {
-            // header columns between the two files are not unique
-            throw new FilesMismatch(COL_MISMATCH);
-        } else if (!csv_file1.has_columns(combination)) {
-            // unique combination columns aren't found in file
-            throw new BadCombination(COMB_NOT_FOUND);
+            ArrayList<Integer> matches = index2.get(new CodeKey(key));
+            if (matches == null) { continue; }
+            boolean has_mismatch = false;
+
+            for (int match : matches) {
+                // combination values are already equal, so the
+                // rows match iff the rest of their values match
+                boolean is_mismatch = false;
+                for (int k=0; k<num_columns; k++) {
+                    int code2 = csv_file2.get_code(match, column_order[k]);
+                    if (csv_file1.get_code(row, k) != code_maps[k][code2]) {
+                        is_mismatch = true;
+                        break;
+                    }
+                }
+
+                if (!is_mismatch) { continue; }
+                String[] match_row = new String[num_columns];
+                for (int k=0; k<num_columns; k++) {
+                    match_row[k] = csv_file2.get_value(match, column_order[k]);
+                }
+
+                all_mismatch_rows.add(match_row);
+                has_mismatch = true;
+            }
+
+            if (has_mismatch) {
+                all_mismatch_rows.add(csv_file1.get_row(row));
+            }
         }
 
-        // get all rows in csv file 1 with no corresponding
-        // rows in csv file 2 (matched based on combination)
+        return all_mismatch_rows;
+    }
+
+    public static void write_unified_diff(
+        CsvFile csv_file1, CsvFile csv_file2, String[] combination,
+        TaggedDiffSink sink
+    ) throws BadCombination, FilesMismatch, IOException {
+        /*
+        full reconciliation of both files in a single pass: the headers
+        are checked once, file 2 is indexed once and file 1 is scanned
+        once, and every row is passed to the sink tagged with its
+        category (see DiffTag). Rows are passed in this order:
+            1. for each row of file 1 (in the order of file 1), either
+            its mismatches followed by the row itself (tagged MISMATCH,
+            in the same order as get_mismatch_rows), or the row on its
+            own if it's not in file 2 (tagged ONLY_IN_FILE1)
+            2. the rows of file 2 that aren't in file 1 (tagged
+            ONLY_IN_FILE2, in the order of file 2)
+        Rows of file 2 are always given in the column order of file 1
+        */
+        ReorderedCsvFile view2 = reorder_view_to_match(
+            csv_file1, csv_file2, combination
+        );
+        KeyIndex index2 = new KeyIndex(csv_file2, combination);
+        ProjectionPlan plan1 = csv_file1.get_projection_plan(combination);
+        ProjectionPlan plan2 = view2.get_projection_plan(combination);
+        // rows of file 2 with the combination values of a row in file 1
+        BitSet matched2 = new BitSet(csv_file2.num_rows());
+
         for (int k=0; k<csv_file1.num_rows(); k++) {
-            String[] current_row = csv_file1.get_row(k);
-            String[] column_values = csv_file1.select_row_columns(
-                k, combination
-            );
+            String[] row1 = csv_file1.peek_row(k);
+            int first_match = index2.first_match(row1, plan1);
+            if (first_match == -1) {
+                sink.add_row(DiffTag.ONLY_IN_FILE1, row1.clone());
+                continue;
+            }
+
+            boolean has_mismatch = false;
+            for (
+                int row_index = first_match; row_index != -1;
+                row_index = index2.next_match(row_index)
+            ) {
+                matched2.set(row_index);
+                String[] row2 = view2.peek_row(row_index);
+                if (!plan1.values_equal(row1, plan2, row2)) {
+                    sink.add_row(DiffTag.MISMATCH, view2.get_row(row_index));
+                    has_mismatch = true;
+                }
+            }
 
-            ArrayList<String[]> matches = cp_csv_file2.search_row_matches(
-                combination, column_values
+            if (has_mismatch) {
+                sink.add_row(DiffTag.MISMATCH, row1.clone());
+            }
+        }
+
+        for (
+            int k=matched2.nextClearBit(0); k<csv_file2.num_rows();
+            k=matched2.nextClearBit(k + 1)
+        ) {
+            sink.add_row(DiffTag.ONLY_IN_FILE2, view2.get_row(k));
+        }
+    }
+
+    public static ArrayList<String[]> get_cross_nomatch_rows(
+        CsvFile csv_file1, CsvFile csv_file2, String[] combination
+    ) throws BadCombination, FilesMismatch {
+        /*
+        return rows in both files where each row that is returned
+        does not have a corresponding entry in the other csv file
+        (rows of file 1 first, then rows of file 2 in the column
+        order of file 1). Both directions come from a single
+        pass over the files (see write_unified_diff)
+        */
+        ArrayList<String[]> all_mismatch_rows = new ArrayList<>();
+        try {
+            write_unified_diff(
+                csv_file1, csv_file2, combination, (tag, row) -> {
+                    if (tag == DiffTag.MISMATCH) { return; }
+                    all_mismatch_rows.add(row);
+                }
             );
+        } catch (IOException e) {
+            // adding rows to a list never fails
+            throw new UncheckedIOException(e);
+        }
+        return all_mismatch_rows;
+    }
+
+    public static ArrayList<String[]> get_nomatch_rows(
+        CsvFile csv_file1, CsvFile csv_file2, String[] combination
+    ) throws BadCombination, FilesMismatch {
+        /*
+        return rows in csv file 1 where each row that is returned
+        does not have a corresponding entry in the csv file 2
+        */
+        // only the header checks are needed, as no
+        // rows of file 2 are ever returned
+        check_comparable(csv_file1, csv_file2, combination);
+        ArrayList<String[]> all_mismatch_rows = new ArrayList<>();
+
+        // get all rows in csv file 1 with no corresponding
+        // rows in csv file 2 (matched based on combination)
+        KeyIndex index2 = new KeyIndex(csv_file2, combination);
+        ProjectionPlan plan1 = csv_file1.get_projection_plan(combination);
+
+        for (int k=0; k<csv_file1.num_rows(); k++) {
+            String[] row1 = csv_file1.peek_row(k);
 
             // add current row as a mismatch if there are no
             // corresponding rows in the other file
-            if (matches.size() == 0) {
-                all_mismatch_rows.add(current_row);
+            if (!index2.has_matches(row1, plan1)) {
+                all_mismatch_rows.add(row1.clone());
             }
         }
 
@@ -282,47 +1262,100 @@ public final class RecordChecker {
     public static String export_mismatches(
         ArrayList<String[]> all_mismatch_rows
     ) throws IOException {
+        return export_mismatches(
+            all_mismatch_rows, RecordChecker.make_export_path()
+        );
+    }
+
+    public static String export_mismatches(
+        ArrayList<String[]> all_mismatch_rows, String export_path
+    ) throws IOException {
+        // write the mismatched rows to export_path (replacing the
+        // file if it exists), returning export_path
+        try (MismatchWriter writer = new MismatchWriter(export_path)) {
+            // columns are not written in example output
+            for (String[] row : all_mismatch_rows) {
+                writer.add_row(row);
+            }
+
+        } catch (IOException e) {
+            CheckerLog.log(LogLevel.ERROR, "File write error occurred.", e);
+            throw new IOException("FILE WRITE FAILED");
+        }
+
+        return export_path;
+    }
+
+    public static String make_export_path() throws IOException {
+        /*
+        return the path of a new timestamped csv file in the
+        mismatches directory to write mismatches to, creating
+        the mismatches directory if it doesn't exist yet
+        */
+        return make_export_path(Path.of("mismatches"));
+    }
+
+    public static String make_export_path(Path directory) throws IOException {
+        /*
+        create a new empty timestamped csv file in directory to write
+        mismatches to and return its path, creating directory if it
+        doesn't exist yet. The file is created atomically, and a suffix
+        is added to its name if another diff that finished in the same
+        second already made the file, so concurrent diffs (from other
+        threads or processes) never share an export file
+        */
         String pattern = "yyMMdd-HHmmss";
         Date date_now = new java.util.Date();
         String stamp = new SimpleDateFormat(pattern).format(date_now);
-        String dirname = "mismatches";
-
-        File directory = new File(dirname);
-        if (!directory.exists()) {
-            System.out.println("created directory " + dirname);
-            boolean dir_created = directory.mkdir();
-            if (!dir_created) {
-                throw new IOException(
-                    "FAILED TO MAKE OUTPUT DIRECTORY"
-                );
+
+        if (!Files.isDirectory(directory)) {
+            CheckerLog.log(LogLevel.INFO, "created directory " + directory);
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new IOException("FAILED TO MAKE OUTPUT DIRECTORY", e);
             }
         }
 
         String filename = "mismatches-" + stamp + ".csv";
-        String export_path = dirname + "/" + filename;
-
-        try {
-            FileWriter writer = new FileWriter(export_path);
-            // columns are not written in example output
-            // String header_line = String.join(",", headers);
-            // writer.write(header_line);
-            // writer.write("\n");
-
-            for (String[] row : all_mismatch_rows) {
-                String line = String.join(",", row);
-                writer.write(line);
-                writer.write("\n");
+        for (int k=2; ; k++) {
+            try {
+                return Files.createFile(directory.resolve(filename)).toString();
+            } catch (FileAlreadyExistsException e) {
+                filename = "mismatches-" + stamp + "-" + k + ".csv";
             }
+        }
+    }
 
-            writer.close();
-
-        } catch (IOException e) {
-            System.out.println("File write error occurred.");
-            e.printStackTrace();
-            throw new IOException("FILE WRITE FAILED");
+    public static Path make_batch_dir() throws IOException {
+        /*
+        create a new timestamped directory in the mismatches directory
+        for the output of a batch, adding a suffix to its name if a
+        batch started in the same second already made the directory
+        */
+        String stamp = new SimpleDateFormat("yyMMdd-HHmmss").format(
+            new java.util.Date()
+        );
+        Path mismatches_dir = Path.of("mismatches");
+        Files.createDirectories(mismatches_dir);
+
+        String dirname = "batch-" + stamp;
+        for (int k=2; ; k++) {
+            try {
+                return Files.createDirectory(mismatches_dir.resolve(dirname));
+            } catch (FileAlreadyExistsException e) {
+                dirname = "batch-" + stamp + "-" + k;
+            }
         }
+    }
 
-        return export_path;
+    public static String[] split_line(String raw_line) {
+        /*
+        split a single line of a csv file into its column values.
+        whitespace around the start and end of the line is ignored
+        */
+        String line = raw_line.trim();
+        return line.split(",");
     }
 
     public static boolean is_unique_arr(String[] arr) {
@@ -365,6 +1398,38 @@ public final class RecordChecker {
         csv_data.print_file();
     }
 
+    public static CsvFile read_csv_parallel(
+        String filename, int num_threads
+    ) throws IOException, BadFileFormat {
+        /*
+        same as read_csv, but the rows of the file are split into
+        chunks that are parsed by num_threads threads at once
+        */
+        return new ParallelCsvParser(num_threads).parse(filename);
+    }
+
+    public static ColumnarCsvFile read_columnar_csv(
+        String filename
+    ) throws IOException, BadFileFormat {
+        /*
+        same as read_csv, but the rows are dictionary encoded into
+        a ColumnarCsvFile as they're read in, so the whole file is
+        never held in memory as String arrays
+        */
+        try (CsvCursor cursor = new CsvCursor(filename)) {
+            ColumnarCsvFile csv_file = new ColumnarCsvFile(
+                cursor.get_headers()
+            );
+
+            while (cursor.next_raw_row()) {
+                csv_file.add_row(cursor.get_reader());
+            }
+
+            csv_file.trim_to_size();
+            return csv_file;
+        }
+    }
+
     public static CsvFile read_csv(
         String filename
     ) throws IOException, BadFileFormat {
@@ -390,12 +1455,10 @@ public final class RecordChecker {
             3. file not having at least 2 rows (including headers)
             4. header columns not being unique
         */
-        String split_by = ",";
         String filename = raw_filename.trim();
 
-        //parsing a CSV file into BufferedReader class constructor
-        FileReader file_obj = new FileReader(filename);
-        BufferedReader br = new BufferedReader(file_obj);
+        // lines are split by scanning a memory mapped view of the file
+        // (see MappedCsvReader), the same way split_line splits them
         ArrayList<String[]> csv_data = new ArrayList<>();
 
         String[] headers = null;
@@ -404,26 +1467,21 @@ public final class RecordChecker {
             csv_data.add(headers);
         }
 
-        while (true) {
-            String raw_line = br.readLine();
-            if (raw_line == null) {
-                break;
-            }
-
-            String line = raw_line.trim();
-            if (csv_data.size() == 0) {
-                assert(headers == null);
-                headers = line.split(split_by);
-                csv_data.add(headers);
-                continue;
+        try (MappedCsvReader reader = new MappedCsvReader(filename)) {
+            while (reader.next_line()) {
+                if (csv_data.size() == 0) {
+                    assert(headers == null);
+                    headers = reader.get_cells();
+                    csv_data.add(headers);
+                    continue;
+                }
+
+                if (reader.num_cells() != headers.length) {
+                    // this row has more columns than were in the headers row
+                    throw new BadFileFormat(COL_MISMATCH);
+                }
+                csv_data.add(reader.get_cells());
             }
-
-            String[] columns = line.split(split_by);
-            if (columns.length != headers.length) {
-                // this row has more columns than were in the headers row
-                throw new BadFileFormat(COL_MISMATCH);
-            }
-            csv_data.add(columns);
         }
 
         if (headers == null) {
@@ -433,8 +1491,10 @@ public final class RecordChecker {
             throw new BadFileFormat(INSUFFICIENT_COLUMNS);
         }
 
-        System.out.println("HEADERS");
-        System.out.println(Arrays.toString(headers));
+        if (CheckerLog.is_enabled(LogLevel.INFO)) {
+            CheckerLog.log(LogLevel.INFO, "HEADERS");
+            CheckerLog.log(LogLevel.INFO, Arrays.toString(headers));
+        }
 
         // Convert String Array to List
         List<String> headers_list = Arrays.asList(headers);
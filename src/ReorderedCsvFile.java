@@ -0,0 +1,72 @@
+public class ReorderedCsvFile {
+    /*
+    view of a CsvFile with its columns in a different order. Only the
+    new position of every column is stored (as the index of the column
+    in the original file), and cells are looked up in the rows of the
+    original file when they're read, so unlike CsvFile.reorder_columns
+    no rows are copied. Changes to the original file show through
+    */
+    private final CsvFile csv_file;
+    private final String[] headers;
+    // column k of the view is column column_order[k] of the file
+    private final int[] column_order;
+
+    public ReorderedCsvFile(CsvFile csv_file, String[] new_columns) {
+        assert csv_file.num_columns() == new_columns.length;
+        this.csv_file = csv_file;
+        this.headers = new_columns.clone();
+        this.column_order = csv_file.get_column_indexes(new_columns);
+        for (int column_index : this.column_order) {
+            assert column_index != -1;
+        }
+    }
+
+    public CsvFile get_source() {
+        return this.csv_file;
+    }
+
+    public int get_source_column(int column) {
+        return this.column_order[column];
+    }
+
+    public ProjectionPlan get_projection_plan(String[] columns) {
+        /*
+        plan for picking columns out of the rows of the original file
+        (see peek_row), with the value columns in the order of the view
+        */
+        return new ProjectionPlan(
+            this.csv_file.get_headers(), columns, this.headers
+        );
+    }
+
+    String[] peek_row(int index) {
+        // row of the original file (see CsvFile.peek_row)
+        return this.csv_file.peek_row(index);
+    }
+
+    public String get_cell(int index, int column) {
+        return this.csv_file.get_cell(index, this.column_order[column]);
+    }
+
+    public String[] get_row(int index) {
+        // copy of the row at index with its columns reordered
+        String[] row = this.csv_file.peek_row(index);
+        String[] reordered_row = new String[this.column_order.length];
+        for (int k=0; k<reordered_row.length; k++) {
+            reordered_row[k] = row[this.column_order[k]];
+        }
+        return reordered_row;
+    }
+
+    public String[] get_headers() {
+        return this.headers.clone();
+    }
+
+    public int num_rows() {
+        return this.csv_file.num_rows();
+    }
+
+    public int num_columns() {
+        return this.headers.length;
+    }
+}
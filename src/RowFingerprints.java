@@ -0,0 +1,331 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class RowFingerprints {
+    /*
+    compact index from the hash of the unique combination values of each
+    row in a csv file (its key) to a hash of the values in the rest of
+    its columns (its fingerprint), i.e. the values exclude_row_columns
+    returns for the row, taken in order of column name so that files
+    with their columns in different orders have the same fingerprints.
+
+    Rows with a key that is in both files and whose fingerprints are
+    equal can't be mismatches, so only the rest of the rows have to be
+    read in and compared. Keys of more than one row in the same file are
+    marked as mixed and always compared. Fingerprints are saved to a
+    sidecar file next to the csv file, and are reused as long as the
+    size, modification time and CRC32C checksum of the csv file don't
+    change (a file rewritten with the same size within the granularity
+    of its modification time only shows up in its checksum).
+
+    Differing keys that hash to the same value only ever make rows get
+    compared when they didn't need to be. Differing values that hash to
+    the same fingerprint (a 1 in 2^64 chance per key) would hide a
+    mismatch
+    */
+    static final String SIDECAR_SUFFIX = ".fp";
+    private static final int MAGIC = 0x43465032;
+    private static final byte EMPTY = 0;
+    private static final byte SINGLE = 1;
+    private static final byte MIXED = 2;
+
+    // open addressing hash table (linear probing) of keys
+    private long[] key_hashes;
+    private long[] value_hashes;
+    private byte[] states;
+    private int num_keys = 0;
+
+    RowFingerprints(int expected_keys) {
+        int capacity = 16;
+        while (capacity * 3 < expected_keys * 5) { capacity *= 2; }
+        this.key_hashes = new long[capacity];
+        this.value_hashes = new long[capacity];
+        this.states = new byte[capacity];
+    }
+
+    void add(long key_hash, long value_hash) {
+        this.add(key_hash, value_hash, SINGLE);
+    }
+
+    private void add(long key_hash, long value_hash, byte state) {
+        if ((this.num_keys + 1) * 5 > this.states.length * 3) {
+            this.grow();
+        }
+
+        int slot = this.find_slot(key_hash);
+        if (this.states[slot] == EMPTY) {
+            this.key_hashes[slot] = key_hash;
+            this.value_hashes[slot] = value_hash;
+            this.states[slot] = state;
+            this.num_keys++;
+        } else {
+            // more than one row in the file has this key
+            this.states[slot] = MIXED;
+        }
+    }
+
+    private void grow() {
+        long[] key_hashes = this.key_hashes;
+        long[] value_hashes = this.value_hashes;
+        byte[] states = this.states;
+
+        int capacity = 2 * states.length;
+        this.key_hashes = new long[capacity];
+        this.value_hashes = new long[capacity];
+        this.states = new byte[capacity];
+
+        for (int k=0; k<states.length; k++) {
+            if (states[k] == EMPTY) { continue; }
+            int slot = this.find_slot(key_hashes[k]);
+            this.key_hashes[slot] = key_hashes[k];
+            this.value_hashes[slot] = value_hashes[k];
+            this.states[slot] = states[k];
+        }
+    }
+
+    private int find_slot(long key_hash) {
+        // slot of key_hash, or the empty slot it would be added to
+        int mask = this.states.length - 1;
+        int slot = (int) (key_hash ^ (key_hash >>> 32)) & mask;
+        while (
+            this.states[slot] != EMPTY && this.key_hashes[slot] != key_hash
+        ) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    public boolean has_key(long key_hash) {
+        return this.states[this.find_slot(key_hash)] != EMPTY;
+    }
+
+    public boolean needs_compare(long key_hash, RowFingerprints other) {
+        /*
+        return true if rows with this key in this file have to be
+        compared with rows in the other file: the key is in both files,
+        and either their fingerprints differ or the key is mixed
+        */
+        int slot = this.find_slot(key_hash);
+        int other_slot = other.find_slot(key_hash);
+        byte state = this.states[slot];
+        byte other_state = other.states[other_slot];
+
+        if (state == EMPTY || other_state == EMPTY) {
+            return false;
+        } else if (state == MIXED || other_state == MIXED) {
+            return true;
+        }
+        return this.value_hashes[slot] != other.value_hashes[other_slot];
+    }
+
+    public boolean has_compares(RowFingerprints other) {
+        // return true if any key needs to be compared (see needs_compare)
+        for (int k=0; k<this.states.length; k++) {
+            if (this.states[k] == EMPTY) { continue; }
+            if (this.needs_compare(this.key_hashes[k], other)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int num_keys() {
+        return this.num_keys;
+    }
+
+    public static int[] get_value_indexes(
+        String[] headers, String[] combination
+    ) {
+        /*
+        indexes of the columns that aren't in the combination,
+        in order of their column names
+        */
+        List<String> key_columns = Arrays.asList(combination);
+        ArrayList<String> value_columns = new ArrayList<>();
+        for (String header : headers) {
+            if (!key_columns.contains(header)) { value_columns.add(header); }
+        }
+        Collections.sort(value_columns);
+
+        List<String> header_list = Arrays.asList(headers);
+        int[] value_indexes = new int[value_columns.size()];
+        for (int k=0; k<value_indexes.length; k++) {
+            value_indexes[k] = header_list.indexOf(value_columns.get(k));
+        }
+        return value_indexes;
+    }
+
+    static int[] get_key_indexes(
+        String[] headers, String[] combination
+    ) throws BadCombination {
+        List<String> header_list = Arrays.asList(headers);
+        int[] key_indexes = new int[combination.length];
+        for (int k=0; k<combination.length; k++) {
+            key_indexes[k] = header_list.indexOf(combination[k]);
+            if (key_indexes[k] == -1) {
+                throw new BadCombination(RecordChecker.COMB_NOT_FOUND);
+            }
+        }
+        return key_indexes;
+    }
+
+    public static RowFingerprints compute(
+        String filename, String[] combination
+    ) throws IOException, BadFileFormat, BadCombination {
+        /*
+        fingerprint every row of a csv file in a single pass over
+        the file, hashing the raw bytes of the cells of each line
+        without building Strings or rows for them
+        */
+        try (CsvCursor cursor = new CsvCursor(filename)) {
+            String[] headers = cursor.get_headers();
+            int[] key_indexes = get_key_indexes(headers, combination);
+            int[] value_indexes = get_value_indexes(headers, combination);
+            MappedCsvReader reader = cursor.get_reader();
+            RowFingerprints fingerprints = new RowFingerprints(1024);
+
+            while (cursor.next_raw_row()) {
+                fingerprints.add(
+                    KeyHasher.hash_cells(reader, key_indexes),
+                    KeyHasher.hash_cells(reader, value_indexes)
+                );
+            }
+            return fingerprints;
+        }
+    }
+
+    public static RowFingerprints load_or_compute(
+        String raw_filename, String[] combination
+    ) throws IOException, BadFileFormat, BadCombination {
+        /*
+        load the fingerprints of a csv file from its sidecar file if
+        the csv file hasn't changed since the sidecar was written,
+        otherwise fingerprint the file and write a new sidecar file
+        */
+        String filename = raw_filename.trim();
+        Path path = Path.of(filename);
+        Path sidecar = Path.of(filename + SIDECAR_SUFFIX);
+        // identity of the file is taken before reading it, so a file
+        // changed while being read never matches its sidecar
+        long size = Files.size(path);
+        long modified = Files.getLastModifiedTime(path).toMillis();
+        long checksum = CsvSnapshot.checksum(path);
+
+        RowFingerprints fingerprints = load(
+            sidecar, size, modified, checksum, combination
+        );
+        if (fingerprints != null) { return fingerprints; }
+
+        fingerprints = compute(filename, combination);
+        try {
+            fingerprints.save(
+                sidecar, size, modified, checksum, combination
+            );
+        } catch (IOException e) {
+            // the sidecar file is only a cache, so
+            // not being able to write it isn't an error
+            Files.deleteIfExists(Path.of(sidecar + ".tmp"));
+        }
+        return fingerprints;
+    }
+
+    void save(
+        Path sidecar, long size, long modified, long checksum,
+        String[] combination
+    ) throws IOException {
+        // write to a temporary file first so that a reader
+        // never sees a half written sidecar file
+        Path temp_path = Path.of(sidecar + ".tmp");
+        try (DataOutputStream stream = new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(temp_path))
+        )) {
+            stream.writeInt(MAGIC);
+            stream.writeLong(size);
+            stream.writeLong(modified);
+            stream.writeLong(checksum);
+            stream.writeInt(combination.length);
+            for (String column : combination) { stream.writeUTF(column); }
+
+            stream.writeInt(this.num_keys);
+            for (int k=0; k<this.states.length; k++) {
+                if (this.states[k] == EMPTY) { continue; }
+                stream.writeLong(this.key_hashes[k]);
+                stream.writeLong(this.value_hashes[k]);
+                stream.writeByte(this.states[k]);
+            }
+        }
+
+        Files.move(
+            temp_path, sidecar, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE
+        );
+    }
+
+    static RowFingerprints load(
+        Path sidecar, long size, long modified, long checksum,
+        String[] combination
+    ) throws IOException {
+        /*
+        return the fingerprints saved in a sidecar file, or null if
+        there is no sidecar file, or if it was made from a different
+        version of the csv file or with a different combination
+        */
+        if (!Files.exists(sidecar)) { return null; }
+
+        try (DataInputStream stream = new DataInputStream(
+            new BufferedInputStream(Files.newInputStream(sidecar))
+        )) {
+            if (stream.readInt() != MAGIC) { return null; }
+            if (stream.readLong() != size) { return null; }
+            if (stream.readLong() != modified) { return null; }
+            if (stream.readLong() != checksum) { return null; }
+
+            String[] sidecar_combination = new String[stream.readInt()];
+            for (int k=0; k<sidecar_combination.length; k++) {
+                sidecar_combination[k] = stream.readUTF();
+            }
+            if (!Arrays.equals(combination, sidecar_combination)) {
+                return null;
+            }
+
+            int num_keys = stream.readInt();
+            RowFingerprints fingerprints = new RowFingerprints(num_keys);
+            for (int k=0; k<num_keys; k++) {
+                long key_hash = stream.readLong();
+                long value_hash = stream.readLong();
+                fingerprints.add(key_hash, value_hash, stream.readByte());
+            }
+            return fingerprints;
+        } catch (EOFException e) {
+            // sidecar file was cut short, so it can't be used
+            return null;
+        }
+    }
+
+    public static CsvFile read_changed_rows(
+        String filename, String[] combination,
+        RowFingerprints fingerprints, RowFingerprints other
+    ) throws IOException, BadFileFormat, BadCombination {
+        /*
+        read in only the rows of a csv file that have to be compared
+        with rows in the other file (see needs_compare), in the
+        order they are in the file
+        */
+        try (CsvCursor cursor = new CsvCursor(filename)) {
+            String[] headers = cursor.get_headers();
+            int[] key_indexes = get_key_indexes(headers, combination);
+            MappedCsvReader reader = cursor.get_reader();
+
+            ArrayList<String[]> csv_data = new ArrayList<>();
+            csv_data.add(headers);
+            while (cursor.next_raw_row()) {
+                long key_hash = KeyHasher.hash_cells(reader, key_indexes);
+                if (fingerprints.needs_compare(key_hash, other)) {
+                    csv_data.add(reader.get_cells());
+                }
+            }
+            return new CsvFile(csv_data);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class RunMetrics {
+    /*
+    measurements of every stage of a diff (see StageMetrics), filled in
+    by RecordChecker.generate_diffs. Stages are timed as a whole (never
+    per row), so measuring them costs next to nothing. A stage is
+    measured by calling start_stage before it and end_stage after it,
+    one stage at a time
+    */
+    static final String PARSE = "parse";
+    static final String HEADER_VALIDATION = "header_validation";
+    static final String REORDER = "reorder";
+    static final String INDEX_BUILD = "index_build";
+    static final String COMPARE = "compare";
+    static final String EXPORT = "export";
+
+    static final String REPORT_SUFFIX = ".report.json";
+
+    private final ArrayList<StageMetrics> stages = new ArrayList<>();
+    private String stage_name = null;
+    private long stage_start_nanos;
+    private long stage_start_allocated;
+    private long num_mismatch_rows = 0;
+    private String export_path = null;
+
+    public void start_stage(String name) {
+        assert this.stage_name == null;
+        this.stage_name = name;
+        this.stage_start_allocated = allocated_bytes();
+        this.stage_start_nanos = System.nanoTime();
+    }
+
+    public void start_parallel_stage(String name) {
+        /*
+        same as start_stage, for stages that do their work on other
+        threads. Only allocations of the current thread can be measured,
+        so the allocated bytes of these stages are unknown (-1)
+        */
+        this.start_stage(name);
+        this.stage_start_allocated = -1;
+    }
+
+    public StageMetrics end_stage(long num_rows, long num_bytes) {
+        /*
+        finish measuring the current stage, where num_rows and
+        num_bytes are the rows and bytes the stage went through
+        */
+        long wall_nanos = System.nanoTime() - this.stage_start_nanos;
+        long allocated = allocated_bytes();
+        if (allocated != -1 && this.stage_start_allocated != -1) {
+            allocated -= this.stage_start_allocated;
+        } else {
+            allocated = -1;
+        }
+
+        StageMetrics stage = new StageMetrics(
+            this.stage_name, wall_nanos, num_rows, num_bytes, allocated
+        );
+        this.stages.add(stage);
+        this.stage_name = null;
+        return stage;
+    }
+
+    private static long allocated_bytes() {
+        // heap allocated by the current thread so far (or -1 if unknown)
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+
+        com.sun.management.ThreadMXBean sun_bean = (
+            (com.sun.management.ThreadMXBean) bean
+        );
+        if (
+            !sun_bean.isThreadAllocatedMemorySupported() ||
+            !sun_bean.isThreadAllocatedMemoryEnabled()
+        ) {
+            return -1;
+        }
+        return sun_bean.getThreadAllocatedBytes(
+            Thread.currentThread().getId()
+        );
+    }
+
+    void set_num_mismatch_rows(long num_mismatch_rows) {
+        this.num_mismatch_rows = num_mismatch_rows;
+    }
+
+    void set_export_path(String export_path) {
+        this.export_path = export_path;
+    }
+
+    public List<StageMetrics> get_stages() {
+        return Collections.unmodifiableList(this.stages);
+    }
+
+    public StageMetrics get_stage(String name) {
+        // measurements of the stage with the name (null if not measured)
+        for (StageMetrics stage : this.stages) {
+            if (stage.name.equals(name)) { return stage; }
+        }
+        return null;
+    }
+
+    public long total_nanos() {
+        long total = 0;
+        for (StageMetrics stage : this.stages) {
+            total += stage.wall_nanos;
+        }
+        return total;
+    }
+
+    public long num_mismatch_rows() {
+        return this.num_mismatch_rows;
+    }
+
+    public String get_export_path() {
+        return this.export_path;
+    }
+
+    public static String get_report_path(String export_path) {
+        // run report is written next to the mismatches file it is for
+        String base_path = export_path;
+        if (base_path.endsWith(".csv")) {
+            base_path = base_path.substring(0, base_path.length() - 4);
+        }
+        return base_path + REPORT_SUFFIX;
+    }
+
+    public String write_report() throws IOException {
+        /*
+        write the metrics as a json run report next to the mismatches
+        file of the run, returning the file path of the report
+        */
+        assert this.export_path != null;
+        String report_path = get_report_path(this.export_path);
+        Files.writeString(
+            Path.of(report_path), this.to_json(), StandardCharsets.UTF_8
+        );
+        return report_path;
+    }
+
+    public String to_json() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"export_path\": ");
+        json.append(json_string(this.export_path)).append(",\n");
+        json.append("  \"num_mismatch_rows\": ");
+        json.append(this.num_mismatch_rows).append(",\n");
+        json.append("  \"total_nanos\": ");
+        json.append(this.total_nanos()).append(",\n");
+        json.append("  \"stages\": [");
+
+        for (int k=0; k<this.stages.size(); k++) {
+            StageMetrics stage = this.stages.get(k);
+            json.append(k == 0 ? "\n" : ",\n");
+            json.append("    {\"name\": ").append(json_string(stage.name));
+            json.append(", \"wall_nanos\": ").append(stage.wall_nanos);
+            json.append(", \"rows\": ").append(stage.num_rows);
+            json.append(", \"rows_per_second\": ").append(
+                Math.round(stage.rows_per_second())
+            );
+            json.append(", \"bytes\": ").append(stage.num_bytes);
+            json.append(", \"allocated_bytes\": ").append(
+                stage.allocated_bytes
+            );
+            json.append("}");
+        }
+
+        json.append(this.stages.size() == 0 ? "]\n" : "\n  ]\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    private static String json_string(String value) {
+        if (value == null) { return "null"; }
+        StringBuilder escaped = new StringBuilder("\"");
+        for (int k=0; k<value.length(); k++) {
+            char character = value.charAt(k);
+            if (character == '"' || character == '\\') {
+                escaped.append('\\').append(character);
+            } else if (character < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) character));
+            } else {
+                escaped.append(character);
+            }
+        }
+        return escaped.append('"').toString();
+    }
+}
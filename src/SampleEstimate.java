@@ -0,0 +1,56 @@
+public class SampleEstimate {
+    /*
+    outcome of diffing a sample of two files (see DiffSampler).
+    num_rows1 and num_rows2 are the number of rows in each file, and
+    sampled_rows1 and sampled_rows2 the number of rows that were in
+    the sample. Rates are estimated out of the sampled rows:
+        mismatch: rows of file 1 that have mismatching rows in file 2
+        (what generate_diffs exports)
+        only_in_file1: rows of file 1 with no rows in file 2 that have
+        the same combination values
+        only_in_file2: rows of file 2 with no rows in file 1 that have
+        the same combination values
+    */
+    public final double sample_rate;
+    public final long num_rows1;
+    public final long num_rows2;
+    public final long sampled_rows1;
+    public final long sampled_rows2;
+    public final RateEstimate mismatch;
+    public final RateEstimate only_in_file1;
+    public final RateEstimate only_in_file2;
+
+    public SampleEstimate(
+        double sample_rate, long num_rows1, long num_rows2,
+        long sampled_rows1, long sampled_rows2, long num_mismatch_rows1,
+        long num_only_in_file1, long num_only_in_file2
+    ) {
+        this.sample_rate = sample_rate;
+        this.num_rows1 = num_rows1;
+        this.num_rows2 = num_rows2;
+        this.sampled_rows1 = sampled_rows1;
+        this.sampled_rows2 = sampled_rows2;
+        this.mismatch = new RateEstimate(num_mismatch_rows1, sampled_rows1);
+        this.only_in_file1 = new RateEstimate(
+            num_only_in_file1, sampled_rows1
+        );
+        this.only_in_file2 = new RateEstimate(
+            num_only_in_file2, sampled_rows2
+        );
+    }
+
+    public String describe() {
+        // report of the estimate, one line per rate
+        return (
+            "SAMPLED " + this.sampled_rows1 + " OF " + this.num_rows1 +
+            " ROWS IN FILE 1 AND " + this.sampled_rows2 + " OF " +
+            this.num_rows2 + " ROWS IN FILE 2\n" +
+            "MISMATCHED IN FILE 1: " +
+            this.mismatch.describe(this.num_rows1) + "\n" +
+            "ONLY IN FILE 1: " +
+            this.only_in_file1.describe(this.num_rows1) + "\n" +
+            "ONLY IN FILE 2: " +
+            this.only_in_file2.describe(this.num_rows2)
+        );
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.IOException;
+import java.util.*;
+
+public class SortedMergeDiff {
+    /*
+    merge join diff over two csv files that are both already sorted
+    (ascending) by the values of the unique combination columns,
+    compared column by column in the order given in the combination.
+    Both files are read with forward-only cursors and mismatches are
+    passed on to the sink as soon as they're found, so the only rows
+    held in memory at any time are the rows of file 2 that share the
+    combination values of the current row in file 1.
+
+    The rows passed to the sink are exactly the same (and in the
+    same order) as what RecordChecker.get_mismatch_rows returns
+    */
+    private final CsvCursor cursor1;
+    private final CsvCursor cursor2;
+    private final String[] headers1;
+    private final int[] key_indexes;
+    // column_order[k] is the index in file 2 of column k in file 1
+    private final int[] column_order;
+
+    private String[] previous_key1 = null;
+    private String[] previous_key2 = null;
+
+    public SortedMergeDiff(
+        CsvCursor cursor1, CsvCursor cursor2, String[] combination
+    ) throws BadCombination, FilesMismatch {
+        String[] headers1 = cursor1.get_headers();
+        String[] headers2 = cursor2.get_headers();
+        check_headers(headers1, headers2, combination);
+
+        List<String> headers1_list = Arrays.asList(headers1);
+        List<String> headers2_list = Arrays.asList(headers2);
+        int[] key_indexes = new int[combination.length];
+        for (int k=0; k<combination.length; k++) {
+            key_indexes[k] = headers1_list.indexOf(combination[k]);
+        }
+
+        int[] column_order = new int[headers1.length];
+        for (int k=0; k<headers1.length; k++) {
+            column_order[k] = headers2_list.indexOf(headers1[k]);
+        }
+
+        this.cursor1 = cursor1;
+        this.cursor2 = cursor2;
+        this.headers1 = headers1;
+        this.key_indexes = key_indexes;
+        this.column_order = column_order;
+    }
+
+    public static void check_headers(
+        String[] headers1, String[] headers2, String[] combination
+    ) throws BadCombination, FilesMismatch {
+        /*
+        make sure the two files have the same set of columns and
+        that every column in the unique combination is one of them
+        */
+        if (!Set.of(headers1).equals(Set.of(headers2))) {
+            // set of columns for both files don't match
+            throw new FilesMismatch(RecordChecker.COL_MISMATCH);
+        } else if (!Set.of(headers1).containsAll(Arrays.asList(combination))) {
+            // unique combination columns aren't found in file
+            throw new BadCombination(RecordChecker.COMB_NOT_FOUND);
+        }
+    }
+
+    public void run(
+        MismatchSink sink
+    ) throws IOException, BadFileFormat {
+        String[] row1 = this.next_row1();
+        String[] row2 = this.next_row2();
+        ArrayList<String[]> group2 = new ArrayList<>();
+
+        while ((row1 != null) && (row2 != null)) {
+            int comparison = this.compare_keys(row1, row2);
+            if (comparison < 0) {
+                // row in file 1 has no corresponding rows in file 2
+                row1 = this.next_row1();
+                continue;
+            } else if (comparison > 0) {
+                // row in file 2 has no corresponding rows in file 1
+                row2 = this.next_row2();
+                continue;
+            }
+
+            // collect every row in file 2 with the same combination
+            // values, these are the only rows that can match the
+            // current and following rows in file 1
+            String[] group_row = row2;
+            group2.clear();
+            while (row2 != null && this.compare_keys(group_row, row2) == 0) {
+                group2.add(row2);
+                row2 = this.next_row2();
+            }
+
+            while (row1 != null && this.compare_keys(row1, group_row) == 0) {
+                boolean has_mismatch = false;
+                for (String[] match : group2) {
+                    // combination values are already equal, so the
+                    // rows match iff the rest of their values match
+                    if (!Arrays.equals(row1, match)) {
+                        sink.add_row(match);
+                        has_mismatch = true;
+                    }
+                }
+
+                if (has_mismatch) { sink.add_row(row1); }
+                row1 = this.next_row1();
+            }
+        }
+    }
+
+    private String[] next_row1() throws IOException, BadFileFormat {
+        String[] row = this.cursor1.next_row();
+        if (row == null) { return null; }
+        this.previous_key1 = this.check_sorted(row, this.previous_key1);
+        return row;
+    }
+
+    private String[] next_row2() throws IOException, BadFileFormat {
+        String[] raw_row = this.cursor2.next_row();
+        if (raw_row == null) { return null; }
+
+        // reorder the columns of file 2 to match file 1
+        String[] row = new String[this.column_order.length];
+        for (int k=0; k<row.length; k++) {
+            row[k] = raw_row[this.column_order[k]];
+        }
+
+        this.previous_key2 = this.check_sorted(row, this.previous_key2);
+        return row;
+    }
+
+    private String[] check_sorted(
+        String[] row, String[] previous_key
+    ) throws BadFileFormat {
+        /*
+        throw an error if the combination values of the row come
+        before the combination values of the previous row in the
+        same file, returns the combination values of the row
+        */
+        String[] key = new String[this.key_indexes.length];
+        for (int k=0; k<key.length; k++) {
+            key[k] = row[this.key_indexes[k]];
+        }
+
+        if (previous_key != null && compare_values(previous_key, key) > 0) {
+            throw new BadFileFormat(RecordChecker.NOT_SORTED);
+        }
+        return key;
+    }
+
+    private int compare_keys(String[] row1, String[] row2) {
+        for (int key_index : this.key_indexes) {
+            int comparison = row1[key_index].compareTo(row2[key_index]);
+            if (comparison != 0) { return comparison; }
+        }
+        return 0;
+    }
+
+    public static int compare_values(String[] values1, String[] values2) {
+        // lexicographic comparison of two arrays of column values
+        assert values1.length == values2.length;
+        for (int k=0; k<values1.length; k++) {
+            int comparison = values1[k].compareTo(values2[k]);
+            if (comparison != 0) { return comparison; }
+        }
+        return 0;
+    }
+
+    public String[] get_headers() {
+        return this.headers1.clone();
+    }
+}
@@ -0,0 +1,29 @@
+public class StageMetrics {
+    /*
+    measurements of a single stage of a diff (see RunMetrics).
+    allocated_bytes is the heap allocated by the thread that ran the
+    stage, or -1 if the JVM can't measure it or if the stage did its
+    work on other threads (see RunMetrics.start_parallel_stage)
+    */
+    public final String name;
+    public final long wall_nanos;
+    public final long num_rows;
+    public final long num_bytes;
+    public final long allocated_bytes;
+
+    public StageMetrics(
+        String name, long wall_nanos, long num_rows, long num_bytes,
+        long allocated_bytes
+    ) {
+        this.name = name;
+        this.wall_nanos = wall_nanos;
+        this.num_rows = num_rows;
+        this.num_bytes = num_bytes;
+        this.allocated_bytes = allocated_bytes;
+    }
+
+    public double rows_per_second() {
+        if (this.wall_nanos <= 0) { return 0; }
+        return this.num_rows * 1e9 / this.wall_nanos;
+    }
+}
@@ -1,8 +1,14 @@
 import static org.junit.Assert.*;
 import org.junit.Test;
 
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class SystemTests {
     /*
@@ -664,4 +670,928 @@ public class SystemTests {
         assertArrayEquals(mismatches.get_row(0), row2);
         assertArrayEquals(mismatches.get_row(1), row1);
     }
+
+    @Test
+    public void sorted_diffs_match_generate_diffs() throws
+        IOException, FilesMismatch, BadFileFormat, BadCombination
+    {
+        /*
+        test for: RecordChecker.generate_sorted_diffs
+        fuzz pairs of files that are sorted by the unique combination
+        (where file 2 has its columns shuffled), and check that the
+        streaming merge diff exports exactly the same file that
+        generate_diffs does
+        */
+        Random generator = new Random();
+        try (FuzzFiles files = new FuzzFiles()) {
+            for (int k=0; k<25; k++) {
+                FuzzCase fuzz_case = FuzzCase.generate(generator, 40).sorted();
+                files.write(fuzz_case);
+                files.assert_same_export(
+                    fuzz_case.unique_combination(),
+                    RecordChecker::generate_sorted_diffs
+                );
+            }
+        }
+    }
+
+    @Test
+    public void sorted_diffs_unsorted_file() throws IOException {
+        /*
+        test for: RecordChecker.generate_sorted_diffs
+        check that the streaming merge diff fails with a BadFileFormat
+        exception if the rows of a file aren't sorted by the
+        unique combination
+        */
+        String[] headers = new String[] {"key", "value"};
+
+        ArrayList<String[]> file_data_1 = new ArrayList<>();
+        file_data_1.add(headers);
+        file_data_1.add(new String[] {"b", "1"});
+        file_data_1.add(new String[] {"a", "1"});
+        ArrayList<String[]> file_data_2 = new ArrayList<>();
+        file_data_2.add(headers);
+        file_data_2.add(new String[] {"a", "1"});
+        file_data_2.add(new String[] {"b", "1"});
+
+        try (FuzzFiles files = new FuzzFiles()) {
+            files.write(new CsvFile(file_data_1), new CsvFile(file_data_2));
+
+            try {
+                RecordChecker.generate_sorted_diffs(
+                    files.filename1, files.filename2, "key"
+                );
+            } catch (Exception e) {
+                assertTrue(e instanceof BadFileFormat);
+                assertEquals(RecordChecker.NOT_SORTED, e.getMessage());
+                return;
+            }
+        }
+
+        fail("NO EXCEPTION THROWN FOR UNSORTED FILE");
+    }
+
+    @Test
+    public void external_diffs_match_sorted_diffs() throws
+        IOException, FilesMismatch, BadFileFormat, BadCombination
+    {
+        /*
+        test for: RecordChecker.generate_external_diffs
+        fuzz pairs of unsorted files (where file 2 has its columns
+        shuffled), and check that sorting them on disk (with tiny runs
+        and fan in so that several merge passes are needed) exports
+        exactly the same file as running generate_diffs on copies
+        of the files that were sorted in memory beforehand
+        */
+        Random generator = new Random();
+        ExternalSortConfig config = new ExternalSortConfig(
+            System.getProperty("java.io.tmpdir"), 3, 2
+        );
+
+        try (FuzzFiles files = new FuzzFiles()) {
+            for (int k=0; k<25; k++) {
+                FuzzCase fuzz_case = FuzzCase.generate(generator, 40);
+                String unique_combination = fuzz_case.unique_combination();
+                FuzzCase sorted_case = fuzz_case.sorted();
+                files.write(
+                    sorted_case.make_file1(),
+                    new CsvFile(new ArrayList<>(sorted_case.rows2))
+                );
+                String expected = files.expected_diffs(unique_combination);
+
+                files.write(fuzz_case);
+                String actual = files.read_export(
+                    RecordChecker.generate_external_diffs(
+                        files.filename1, files.filename2,
+                        unique_combination, config
+                    )
+                );
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    public void write_ledger_file(
+        String filename, int num_rows, long seed
+    ) throws IOException {
+        /*
+        write a csv file shaped like the sample files with num_rows
+        rows in a random order, where about 1 in 100 rows has a
+        different balance depending on the seed used
+        */
+        Random shuffler = new Random(0);
+        Random generator = new Random(seed);
+        int[] ids = new int[num_rows];
+        for (int k=0; k<num_rows; k++) { ids[k] = k; }
+        for (int k=num_rows-1; k>0; k--) {
+            int swap_index = shuffler.nextInt(k + 1);
+            int id = ids[k];
+            ids[k] = ids[swap_index];
+            ids[swap_index] = id;
+        }
+
+        String[] currencies = new String[] {"USD", "AUD", "INR", "SGD"};
+        String[] types = new String[] {"SAVINGS", "CURRENT"};
+
+        try (
+            BufferedWriter writer = Files.newBufferedWriter(Path.of(filename))
+        ) {
+            writer.write("Customer ID#,Account No.,Currency,Type,Balance\n");
+            for (int id : ids) {
+                int balance = (id * 7919) % 1000000;
+                if (generator.nextInt(100) == 0) { balance += 1; }
+                writer.write(
+                    "ID" + id + ",BOS" + (id * 31 % 999983) + "," +
+                    currencies[id % currencies.length] + "," +
+                    types[id % types.length] + "," + balance + "\n"
+                );
+            }
+        }
+    }
+
+    @Test
+    public void external_sort_bad_options() {
+        /*
+        test for: RecordChecker.run_from_args, ExternalSortConfig
+        check that run sizes below 1 and fan ins below 2 (which would
+        never finish merging the runs) are rejected as usage errors
+        before any file is read
+        */
+        for (String option : new String[] {
+            "--run-size=0", "--fan-in=1", "--fan-in=0", "--fan-in=two"
+        }) {
+            int status = RecordChecker.run_from_args(new String[] {
+                "--external", option, "sample_file_1.csv",
+                "sample_file_3.csv", "Customer ID#, Account No."
+            });
+            assertEquals(2, status);
+        }
+
+        try {
+            new ExternalSortConfig(System.getProperty("java.io.tmpdir"), 1, 1);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        fail("NO EXCEPTION THROWN FOR FAN IN OF 1");
+    }
+
+    @Test
+    public void external_diffs_heap_cap() throws
+        IOException, InterruptedException, FilesMismatch,
+        BadFileFormat, BadCombination
+    {
+        /*
+        test for: RecordChecker.generate_external_diffs
+        run the external sort diff in a separate JVM whose max heap
+        size is capped to less than the combined size of the two
+        (unsorted) input files, which is far less than loading them
+        into CsvFile instances would need, and make sure it finishes
+        successfully without running out of memory and exports the
+        same rows as generate_diffs (which are only ordered
+        differently, by their unique combination values)
+        */
+        final int heap_cap_mb = 24;
+        final String combination = "Customer ID#, Account No., Currency, Type";
+
+        try (FuzzFiles files = new FuzzFiles()) {
+            write_ledger_file(files.filename1, 500000, 1);
+            write_ledger_file(files.filename2, 500000, 2);
+
+            long input_bytes = (
+                Files.size(Path.of(files.filename1)) +
+                Files.size(Path.of(files.filename2))
+            );
+            assertTrue(input_bytes > heap_cap_mb * 1024L * 1024L);
+
+            // the child runs in the temp directory (so that it exports
+            // there), so its class path can't have relative paths
+            ArrayList<String> class_path = new ArrayList<>();
+            for (String entry : System.getProperty("java.class.path").split(
+                File.pathSeparator
+            )) {
+                class_path.add(Path.of(entry).toAbsolutePath().toString());
+            }
+
+            String java_path = Path.of(
+                System.getProperty("java.home"), "bin", "java"
+            ).toString();
+            Process process = new ProcessBuilder(
+                java_path, "-Xmx" + heap_cap_mb + "m",
+                "-cp", String.join(File.pathSeparator, class_path),
+                "RecordChecker", "--external", "--run-size=20000",
+                "--temp-dir=" + files.dir, files.filename1, files.filename2,
+                combination
+            ).directory(files.dir.toFile()).redirectErrorStream(true).start();
+
+            String output = new String(
+                process.getInputStream().readAllBytes()
+            );
+            assertEquals(output, 0, process.waitFor());
+
+            final String prefix = "Successfully wrote mismatches to ";
+            int start = output.indexOf(prefix);
+            assertTrue(output, start != -1);
+            String export_path = output.substring(
+                start + prefix.length()
+            ).strip();
+
+            List<String> expected = new ArrayList<>(
+                files.expected_diffs(combination).lines().toList()
+            );
+            List<String> actual = new ArrayList<>(files.read_export(
+                files.dir.resolve(export_path).toString()
+            ).lines().toList());
+            assertTrue(expected.size() > 1);
+            Collections.sort(expected);
+            Collections.sort(actual);
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void pipelined_diffs_match_generate_diffs() throws
+        IOException, FilesMismatch, BadFileFormat, BadCombination
+    {
+        /*
+        test for: RecordChecker.generate_pipelined_diffs
+        fuzz pairs of files (where file 2 has its columns shuffled),
+        and check that writing mismatches through the writer thread
+        exports exactly the same file that generate_diffs does
+        */
+        Random generator = new Random();
+        try (FuzzFiles files = new FuzzFiles()) {
+            for (int k=0; k<25; k++) {
+                FuzzCase fuzz_case = FuzzCase.generate(generator, 400);
+                files.write(fuzz_case);
+                files.assert_same_export(
+                    fuzz_case.unique_combination(),
+                    RecordChecker::generate_pipelined_diffs
+                );
+            }
+        }
+    }
+
+    @Test
+    public void incremental_diffs_match_generate_diffs() throws
+        IOException, FilesMismatch, BadFileFormat, BadCombination
+    {
+        /*
+        test for: RecordChecker.generate_incremental_diffs
+        fuzz pairs of files (where file 2 has its columns shuffled), and
+        check that the incremental diff exports exactly the same file
+        that generate_diffs does, both when fingerprinting the files,
+        when reusing the saved fingerprints, and after file 2 changes
+        */
+        Random generator = new Random();
+        try (FuzzFiles files = new FuzzFiles()) {
+            Path sidecar1 = Path.of(
+                files.filename1 + RowFingerprints.SIDECAR_SUFFIX
+            );
+            Path sidecar2 = Path.of(
+                files.filename2 + RowFingerprints.SIDECAR_SUFFIX
+            );
+
+            for (int k=0; k<25; k++) {
+                FuzzCase fuzz_case = FuzzCase.generate(generator, 100);
+                Files.deleteIfExists(sidecar1);
+                Files.deleteIfExists(sidecar2);
+                fuzz_case.make_file1().export_csv(files.filename1);
+
+                for (int i=0; i<2; i++) {
+                    CsvFile csv_file_2 = new CsvFile(
+                        fuzz_case.make_rows(1 + generator.nextInt(100))
+                    );
+                    csv_file_2.scramble_columns_inplace();
+                    csv_file_2.export_csv(files.filename2);
+                    // keep the modification time the same, so that only
+                    // the checksum tells the sidecar is out of date
+                    Files.setLastModifiedTime(
+                        Path.of(files.filename2), FileTime.fromMillis(1000)
+                    );
+
+                    for (int j=0; j<2; j++) {
+                        files.assert_same_export(
+                            fuzz_case.unique_combination(),
+                            RecordChecker::generate_incremental_diffs
+                        );
+                        assertTrue(Files.exists(sidecar1));
+                        assertTrue(Files.exists(sidecar2));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void cached_diffs_match_generate_diffs() throws
+        IOException, FilesMismatch, BadFileFormat, BadCombination
+    {
+        /*
+        test for: RecordChecker.generate_cached_diffs
+        compare a golden file against many fuzzed files (with shuffled
+        columns) as both file 1 and file 2, and check that taking the
+        files from the cache exports exactly the same file that
+        generate_diffs does, while the golden file is only read in once
+        */
+        Random generator = new Random();
+        FuzzCase fuzz_case = FuzzCase.generate(
+            4, 2, 3, 1 + generator.nextInt(100), 1
+        );
+        String unique_combination = fuzz_case.unique_combination();
+        ParsedFileCache cache = new ParsedFileCache(1L << 30);
+
+        try (FuzzFiles files = new FuzzFiles()) {
+            String golden_filename = files.filename1;
+            String filename = files.filename2;
+            fuzz_case.make_file1().export_csv(golden_filename);
+            CachedCsvFile golden_file = cache.get(golden_filename);
+
+            for (int k=0; k<25; k++) {
+                CsvFile csv_file = new CsvFile(
+                    fuzz_case.make_rows(1 + generator.nextInt(100))
+                );
+                csv_file.scramble_columns_inplace();
+                csv_file.export_csv(filename);
+                // make sure a changed file never looks unchanged
+                Files.setLastModifiedTime(
+                    Path.of(filename), FileTime.fromMillis(1000 * k)
+                );
+
+                String[][] pairs = new String[][] {
+                    {golden_filename, filename}, {filename, golden_filename}
+                };
+                for (String[] pair : pairs) {
+                    files.assert_same_export(
+                        pair[0], pair[1], unique_combination,
+                        (filename1, filename2, combination) -> (
+                            RecordChecker.generate_cached_diffs(
+                                filename1, filename2, combination, cache
+                            )
+                        )
+                    );
+                }
+            }
+
+            // golden file was only ever read in once
+            assertSame(golden_file, cache.get(golden_filename));
+        }
+    }
+
+    @Test
+    public void batch_diffs_match_generate_diffs() throws
+        IOException, FilesMismatch, BadFileFormat, BadCombination
+    {
+        /*
+        test for: BatchReconciler (see RecordChecker.generate_batch_diffs)
+        diff a batch of fuzzed candidate files (with shuffled columns)
+        against a master file, and check that the mismatches file of
+        each candidate is exactly the same as the file generate_diffs
+        exports for the master and that candidate, and that a candidate
+        with the wrong columns is reported in the summary
+        */
+        Random generator = new Random();
+        FuzzCase fuzz_case = FuzzCase.generate(
+            4, 2, 3, 1 + generator.nextInt(100), 1
+        );
+        String unique_combination = fuzz_case.unique_combination();
+
+        try (FuzzFiles files = new FuzzFiles()) {
+            String master_filename = files.filename1;
+            fuzz_case.make_file1().export_csv(master_filename);
+
+            ArrayList<String> candidate_filenames = new ArrayList<>();
+            ArrayList<String> expected = new ArrayList<>();
+            for (int k=0; k<10; k++) {
+                CsvFile csv_file = new CsvFile(
+                    fuzz_case.make_rows(1 + generator.nextInt(100))
+                );
+                csv_file.scramble_columns_inplace();
+                String filename = files.get_path(
+                    "fuzz_batch_file_" + k + ".csv"
+                );
+                csv_file.export_csv(filename);
+                candidate_filenames.add(filename);
+                expected.add(files.expected_diffs(
+                    master_filename, filename, unique_combination
+                ));
+            }
+
+            String bad_filename = files.get_path("fuzz_batch_file_bad.csv");
+            new CsvFile(FuzzCase.make_overlapping_rows(
+                fuzz_case.combination, 5, fuzz_case.pool
+            )).export_csv(bad_filename);
+            candidate_filenames.add(bad_filename);
+
+            Path batch_dir = files.dir.resolve("batch");
+            new BatchReconciler(
+                master_filename, unique_combination, 4
+            ).run(candidate_filenames, batch_dir);
+            CsvFile summary = RecordChecker.read_csv(
+                batch_dir.resolve(BatchReconciler.SUMMARY_FILENAME).toString()
+            );
+            assertEquals(candidate_filenames.size(), summary.num_rows());
+
+            for (int k=0; k<candidate_filenames.size(); k++) {
+                String[] summary_row = summary.get_row(k);
+                assertEquals(candidate_filenames.get(k), summary_row[0]);
+
+                if (k == expected.size()) {
+                    assertEquals(RecordChecker.COL_MISMATCH, summary_row[3]);
+                    continue;
+                }
+
+                assertEquals("OK", summary_row[3]);
+                String actual = Files.readString(Path.of(summary_row[2]));
+                assertEquals(expected.get(k), actual);
+            }
+        }
+    }
+
+    @Test
+    public void batch_errors_stay_in_summary() throws
+        IOException, BadFileFormat, BadCombination
+    {
+        /*
+        test for: BatchReconciler.run
+        check that an unchecked exception thrown while diffing one
+        candidate is reported in the summary instead of aborting the
+        rest of the batch, and that commas in candidate filenames and
+        errors don't split the summary rows into extra cells
+        */
+        try (FuzzFiles files = new FuzzFiles()) {
+            String[] headers = new String[] {"a", "b", "c"};
+            ArrayList<String> pool = RandomString.generate_multi_exc(3, 3);
+            String master_filename = files.get_path("master.csv");
+            new CsvFile(
+                FuzzCase.make_overlapping_rows(headers, 20, pool)
+            ).export_csv(master_filename);
+
+            ArrayList<String> candidate_filenames = new ArrayList<>();
+            for (int k=0; k<3; k++) {
+                String filename = files.get_path("candidate," + k + ".csv");
+                new CsvFile(
+                    FuzzCase.make_overlapping_rows(headers, 1 + k, pool)
+                ).export_csv(filename);
+                candidate_filenames.add(filename);
+            }
+
+            BatchReconciler reconciler = new BatchReconciler(
+                master_filename, "a,b", 2
+            ) {
+                @Override
+                public ArrayList<String[]> get_mismatch_rows(
+                    CsvFile candidate_file
+                ) throws BadCombination, FilesMismatch {
+                    if (candidate_file.num_rows() == 2) {
+                        throw new IllegalStateException("BROKEN, CANDIDATE");
+                    }
+                    return super.get_mismatch_rows(candidate_file);
+                }
+            };
+
+            Path output_dir = files.dir.resolve("batch");
+            ArrayList<BatchResult> results = reconciler.run(
+                candidate_filenames, output_dir
+            );
+            assertTrue(results.get(0).succeeded());
+            assertFalse(results.get(1).succeeded());
+            assertTrue(results.get(2).succeeded());
+
+            // read_csv fails if a row has more cells than the headers
+            Path summary_path = output_dir.resolve(
+                BatchReconciler.SUMMARY_FILENAME
+            );
+            CsvFile summary = RecordChecker.read_csv(summary_path.toString());
+            assertEquals(3, summary.num_rows());
+            for (int k=0; k<3; k++) {
+                String[] summary_row = summary.get_row(k);
+                assertEquals(
+                    candidate_filenames.get(k).replace(',', ';'), summary_row[0]
+                );
+                String status = (k == 1) ? "BROKEN; CANDIDATE" : "OK";
+                assertEquals(status, summary_row[3]);
+            }
+
+        }
+    }
+
+    @Test
+    public void unified_diff_matches_separate_diffs() throws
+        IOException, FilesMismatch, BadCombination
+    {
+        /*
+        test for: RecordChecker.write_unified_diff
+        fuzz pairs of files (where file 2 has its columns shuffled),
+        and check that the rows of each category of the unified diff
+        are the same rows (in the same order) as diffing the files
+        with get_mismatch_rows and get_nomatch_rows in each direction
+        */
+        Random generator = new Random();
+
+        for (int k=0; k<25; k++) {
+            FuzzCase fuzz_case = FuzzCase.generate(generator, 400);
+            String[] headers = fuzz_case.headers;
+            String[] combination = fuzz_case.combination;
+            CsvFile csv_file_1 = fuzz_case.make_file1();
+            CsvFile csv_file_2 = fuzz_case.make_file2();
+
+            HashMap<DiffTag, ArrayList<String[]>> tagged_rows = new HashMap<>();
+            for (DiffTag tag : DiffTag.values()) {
+                tagged_rows.put(tag, new ArrayList<>());
+            }
+            RecordChecker.write_unified_diff(
+                csv_file_1, csv_file_2, combination,
+                (tag, row) -> tagged_rows.get(tag).add(row)
+            );
+
+            ArrayList<String[]> only_in_file2 = RecordChecker.get_nomatch_rows(
+                csv_file_2.reorder_columns(headers), csv_file_1, combination
+            );
+            ArrayList<String[]> all_nomatch_rows = new ArrayList<>(
+                tagged_rows.get(DiffTag.ONLY_IN_FILE1)
+            );
+            all_nomatch_rows.addAll(tagged_rows.get(DiffTag.ONLY_IN_FILE2));
+
+            assertArrayEquals(
+                RecordChecker.get_mismatch_rows(
+                    csv_file_1, csv_file_2, combination
+                ).toArray(),
+                tagged_rows.get(DiffTag.MISMATCH).toArray()
+            );
+            assertArrayEquals(
+                RecordChecker.get_nomatch_rows(
+                    csv_file_1, csv_file_2, combination
+                ).toArray(),
+                tagged_rows.get(DiffTag.ONLY_IN_FILE1).toArray()
+            );
+            assertArrayEquals(
+                only_in_file2.toArray(),
+                tagged_rows.get(DiffTag.ONLY_IN_FILE2).toArray()
+            );
+            assertArrayEquals(
+                all_nomatch_rows.toArray(),
+                RecordChecker.get_cross_nomatch_rows(
+                    csv_file_1, csv_file_2, combination
+                ).toArray()
+            );
+        }
+    }
+
+    @Test
+    public void run_metrics_report() throws
+        IOException, FilesMismatch, BadFileFormat, BadCombination
+    {
+        /*
+        test for: RecordChecker.generate_diffs, RunMetrics
+        check that measuring a diff doesn't change what it exports,
+        that every stage is measured in order, and that the run report
+        is written next to the mismatches file
+        */
+        try (FuzzFiles files = new FuzzFiles()) {
+            FuzzCase fuzz_case = FuzzCase.generate(4, 2, 3, 300, 300);
+            String unique_combination = fuzz_case.unique_combination();
+            files.write(fuzz_case);
+            String filename1 = files.filename1;
+            String filename2 = files.filename2;
+            String expected = files.expected_diffs(unique_combination);
+            RunMetrics metrics = new RunMetrics();
+            String export_path = RecordChecker.generate_diffs(
+                filename1, filename2, unique_combination, metrics
+            );
+            assertEquals(expected, Files.readString(Path.of(export_path)));
+            assertEquals(export_path, metrics.get_export_path());
+
+            String[] stage_names = new String[] {
+                RunMetrics.PARSE, RunMetrics.HEADER_VALIDATION,
+                RunMetrics.REORDER, RunMetrics.INDEX_BUILD,
+                RunMetrics.COMPARE, RunMetrics.EXPORT
+            };
+            List<StageMetrics> stages = metrics.get_stages();
+            assertEquals(stage_names.length, stages.size());
+            for (int k=0; k<stage_names.length; k++) {
+                assertEquals(stage_names[k], stages.get(k).name);
+                assertTrue(stages.get(k).wall_nanos >= 0);
+            }
+
+            assertEquals(600, metrics.get_stage(RunMetrics.PARSE).num_rows);
+            assertEquals(
+                new File(filename1).length() + new File(filename2).length(),
+                metrics.get_stage(RunMetrics.PARSE).num_bytes
+            );
+            assertEquals(300, metrics.get_stage(RunMetrics.COMPARE).num_rows);
+            assertEquals(
+                expected.lines().count(), metrics.num_mismatch_rows()
+            );
+            assertEquals(
+                expected.getBytes().length,
+                metrics.get_stage(RunMetrics.EXPORT).num_bytes
+            );
+
+            String report_path = metrics.write_report();
+            assertEquals(
+                RunMetrics.get_report_path(export_path), report_path
+            );
+            String report = Files.readString(Path.of(report_path));
+            assertEquals(metrics.to_json(), report);
+            assertTrue(report.contains(
+                "\"num_mismatch_rows\": " + metrics.num_mismatch_rows()
+            ));
+            for (String stage_name : stage_names) {
+                assertTrue(report.contains("\"name\": \"" + stage_name + "\""));
+            }
+
+            Files.delete(Path.of(export_path));
+            Files.delete(Path.of(report_path));
+        }
+    }
+
+    @Test
+    public void threaded_run_metrics_report() throws
+        IOException, FilesMismatch, BadFileFormat, BadCombination
+    {
+        /*
+        test for: RecordChecker.generate_diffs, RecordChecker.run_from_args
+        check that the multithreaded diff measures its parse, compare and
+        export stages without changing what it exports, and that asking
+        for a report with a mode that can't measure its stages is
+        rejected as a usage error instead of being ignored
+        */
+        try (FuzzFiles files = new FuzzFiles()) {
+            FuzzCase fuzz_case = FuzzCase.generate(4, 2, 3, 300, 300);
+            String unique_combination = fuzz_case.unique_combination();
+            files.write(fuzz_case);
+            String expected = files.expected_diffs(unique_combination);
+            RunMetrics metrics = new RunMetrics();
+            String actual = files.read_export(RecordChecker.generate_diffs(
+                files.filename1, files.filename2, unique_combination, 3,
+                metrics
+            ));
+            assertEquals(expected, actual);
+
+            String[] stage_names = new String[] {
+                RunMetrics.PARSE, RunMetrics.COMPARE, RunMetrics.EXPORT
+            };
+            List<StageMetrics> stages = metrics.get_stages();
+            assertEquals(stage_names.length, stages.size());
+            for (int k=0; k<stage_names.length; k++) {
+                assertEquals(stage_names[k], stages.get(k).name);
+            }
+            assertEquals(600, metrics.get_stage(RunMetrics.PARSE).num_rows);
+            assertEquals(
+                -1, metrics.get_stage(RunMetrics.COMPARE).allocated_bytes
+            );
+            assertEquals(
+                expected.lines().count(), metrics.num_mismatch_rows()
+            );
+
+            for (String mode : new String[] {"--sorted", "--batch"}) {
+                int status = RecordChecker.run_from_args(new String[] {
+                    mode, "--report", files.filename1, files.filename2,
+                    unique_combination
+                });
+                assertEquals(2, status);
+            }
+        }
+    }
+
+    @Test
+    public void concurrent_reconciliations() throws Exception {
+        /*
+        test for: ReconciliationService
+        run many reconciliations of the same files at once from a single
+        service, and check that each of them exported to its own file
+        with exactly what generate_diffs exports
+        */
+        try (FuzzFiles files = new FuzzFiles()) {
+            FuzzCase fuzz_case = FuzzCase.generate(4, 2, 3, 300, 300);
+            String unique_combination = fuzz_case.unique_combination();
+            files.write(fuzz_case);
+            String filename1 = files.filename1;
+            String filename2 = files.filename2;
+            String expected = files.expected_diffs(unique_combination);
+            ReconciliationService service = new ReconciliationService(
+                files.dir.resolve("reconciliations")
+            );
+
+            ArrayList<Callable<String>> tasks = new ArrayList<>();
+            for (int k=0; k<32; k++) {
+                tasks.add(() -> service.reconcile(
+                    filename1, filename2, unique_combination
+                ));
+            }
+            Path chosen_path = files.dir.resolve("chosen.csv");
+            tasks.add(() -> service.reconcile(
+                filename1, filename2, unique_combination, chosen_path
+            ));
+
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            HashSet<String> export_paths = new HashSet<>();
+            try {
+                for (Future<String> result : executor.invokeAll(tasks)) {
+                    export_paths.add(result.get());
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            assertEquals(tasks.size(), export_paths.size());
+            assertTrue(export_paths.contains(chosen_path.toString()));
+            for (String export_path : export_paths) {
+                assertEquals(expected, Files.readString(Path.of(export_path)));
+            }
+        }
+    }
+
+    @Test
+    public void job_runner_matches_generate_diffs() throws Exception {
+        /*
+        test for: DiffJobRunner
+        run many small reconciliations through a job runner, and check
+        that every job exported what generate_diffs exports for its
+        files, that failing jobs report their errors, and that no more
+        jobs were diffing at once than the runner allows
+        */
+        try (FuzzFiles files = new FuzzFiles()) {
+            ArrayList<String[]> pairs = new ArrayList<>();
+            ArrayList<String> expected = new ArrayList<>();
+
+            for (int k=0; k<6; k++) {
+                FuzzCase fuzz_case = FuzzCase.generate(4, 2, 3, 200, 200);
+                String filename1 = files.get_path(k + "-1.csv");
+                String filename2 = files.get_path(k + "-2.csv");
+                fuzz_case.make_file1().export_csv(filename1);
+                fuzz_case.make_file2().export_csv(filename2);
+                String combination = fuzz_case.unique_combination();
+                pairs.add(new String[] {filename1, filename2, combination});
+                expected.add(
+                    files.expected_diffs(filename1, filename2, combination)
+                );
+            }
+
+            Path output_dir = files.dir.resolve("jobs");
+            ArrayList<DiffJob> jobs = new ArrayList<>();
+            DiffJob missing_job;
+            DiffJob bad_combination_job;
+
+            try (DiffJobRunner runner = new DiffJobRunner(output_dir, 2, 8)) {
+                for (int k=0; k<30; k++) {
+                    String[] pair = pairs.get(k % pairs.size());
+                    jobs.add(runner.submit(pair[0], pair[1], pair[2]));
+                }
+                missing_job = runner.submit(
+                    files.get_path("missing.csv"),
+                    pairs.get(0)[1], pairs.get(0)[2]
+                );
+                bad_combination_job = runner.submit(
+                    pairs.get(0)[0], pairs.get(0)[1], "not a column"
+                );
+
+                runner.await_all();
+                assertEquals(32, runner.get_jobs().size());
+                assertEquals(
+                    30, (int) runner.count_statuses().get(JobStatus.SUCCEEDED)
+                );
+                assertEquals(
+                    2, (int) runner.count_statuses().get(JobStatus.FAILED)
+                );
+                assertTrue(runner.peak_diffing() <= 2);
+            }
+
+            HashSet<String> export_paths = new HashSet<>();
+            for (int k=0; k<jobs.size(); k++) {
+                DiffJob job = jobs.get(k);
+                assertEquals(JobStatus.SUCCEEDED, job.get_status());
+                assertNull(job.get_error());
+                assertEquals(
+                    expected.get(k % pairs.size()),
+                    Files.readString(Path.of(job.get_export_path()))
+                );
+                assertEquals(
+                    job.get_export_path(), job.get_metrics().get_export_path()
+                );
+                export_paths.add(job.get_export_path());
+            }
+            assertEquals(jobs.size(), export_paths.size());
+
+            assertEquals(JobStatus.FAILED, missing_job.get_status());
+            assertTrue(missing_job.get_error() instanceof IOException);
+            assertNull(missing_job.get_export_path());
+            assertTrue(
+                bad_combination_job.get_error() instanceof BadCombination
+            );
+
+            DiffJobRunner closed_runner = new DiffJobRunner(output_dir, 1, 1);
+            closed_runner.close();
+            try {
+                closed_runner.submit(pairs.get(0)[0], pairs.get(0)[1], "a");
+                fail("JOB SUBMITTED AFTER CLOSE WASN'T REJECTED");
+            } catch (RejectedExecutionException e) {
+                assertEquals(0, closed_runner.get_jobs().size());
+            }
+
+        }
+    }
+
+    @Test
+    public void sample_estimate_matches_full_diff() throws
+        IOException, FilesMismatch, BadFileFormat, BadCombination
+    {
+        /*
+        test for: DiffSampler
+        fuzz pairs of files, and check that sampling every key gives
+        exactly the counts of a full unified diff, and that a partial
+        sample is the same on every run and only holds rows whose
+        combination values hash into the sample
+        */
+        Random generator = new Random();
+        try (FuzzFiles files = new FuzzFiles()) {
+            String filename1 = files.filename1;
+            String filename2 = files.filename2;
+
+            for (int k=0; k<10; k++) {
+                FuzzCase fuzz_case = FuzzCase.generate(
+                    4, 2, 3 + generator.nextInt(3),
+                    1 + generator.nextInt(400), 1 + generator.nextInt(400)
+                );
+                String[] headers = fuzz_case.headers;
+                String[] combination = fuzz_case.combination;
+                CsvFile csv_file_1 = fuzz_case.make_file1();
+                CsvFile csv_file_2 = fuzz_case.make_file2();
+                files.write(csv_file_1, csv_file_2);
+
+                long[] counts = new long[3];
+                RecordChecker.write_unified_diff(
+                    csv_file_1, csv_file_2, combination, (tag, row) -> {
+                        counts[tag.ordinal()]++;
+                    }
+                );
+                // rows of file 1 with a row in file 2 that has the same
+                // combination values but isn't the same row
+                CsvFile cp_csv_file_2 = csv_file_2.reorder_columns(headers);
+                ProjectionPlan plan = csv_file_1.get_projection_plan(
+                    combination
+                );
+                long num_mismatch_rows1 = 0;
+                for (int i=0; i<csv_file_1.num_rows(); i++) {
+                    String[] row1 = csv_file_1.peek_row(i);
+                    for (int j=0; j<cp_csv_file_2.num_rows(); j++) {
+                        String[] row2 = cp_csv_file_2.peek_row(j);
+                        if (
+                            plan.key_equals(row2, plan.select(row1)) &&
+                            !Arrays.equals(row1, row2)
+                        ) {
+                            num_mismatch_rows1++;
+                            break;
+                        }
+                    }
+                }
+
+                String unique_combination = fuzz_case.unique_combination();
+                SampleEstimate full = RecordChecker.generate_sample_estimate(
+                    filename1, filename2, unique_combination, 1
+                );
+                assertEquals(csv_file_1.num_rows(), full.sampled_rows1);
+                assertEquals(csv_file_2.num_rows(), full.num_rows2);
+                assertEquals(
+                    counts[DiffTag.ONLY_IN_FILE1.ordinal()],
+                    full.only_in_file1.count
+                );
+                assertEquals(
+                    counts[DiffTag.ONLY_IN_FILE2.ordinal()],
+                    full.only_in_file2.count
+                );
+                assertEquals(num_mismatch_rows1, full.mismatch.count);
+
+                SampleEstimate partial = (
+                    RecordChecker.generate_sample_estimate(
+                        filename1, filename2, unique_combination, 0.3
+                    )
+                );
+                SampleEstimate repeated = (
+                    RecordChecker.generate_sample_estimate(
+                        filename1, filename2, unique_combination, 0.3
+                    )
+                );
+                assertEquals(partial.describe(), repeated.describe());
+
+                long num_sampled = 0;
+                for (int i=0; i<csv_file_1.num_rows(); i++) {
+                    long key_hash = plan.hash_key(csv_file_1.peek_row(i));
+                    if (DiffSampler.is_sampled(key_hash, 0.3)) {
+                        num_sampled++;
+                    }
+                }
+                assertEquals(num_sampled, partial.sampled_rows1);
+
+                for (RateEstimate rate : new RateEstimate[] {
+                    partial.mismatch, partial.only_in_file1,
+                    partial.only_in_file2
+                }) {
+                    assertTrue(rate.lower() <= rate.rate());
+                    assertTrue(rate.rate() <= rate.upper());
+                    assertTrue(rate.lower() >= 0 && rate.upper() <= 1);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,9 @@
+import java.io.IOException;
+
+public interface TaggedDiffSink {
+    /*
+    receives the rows of a unified diff as they are found,
+    along with the category of each row (see DiffTag)
+    */
+    void add_row(DiffTag tag, String[] row) throws IOException;
+}
@@ -1,8 +1,17 @@
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.BufferedReader;
+import java.io.FileWriter;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.*;
 
 import static org.junit.Assert.*;
@@ -545,4 +554,1077 @@ public class UnitTests {
 
         fail("EMPTY FILE READ SHOULD'VE THROWN ERROR");
     }
+
+    public ArrayList<String[]> nested_scan_mismatch_rows(
+        CsvFile csv_file1, CsvFile csv_file2, String[] combination
+    ) {
+        /*
+        reference implementation of RecordChecker.get_mismatch_rows
+        that scans every row of file 2 for every row in file 1
+        */
+        CsvFile cp_csv_file2 = csv_file2.reorder_columns(
+            csv_file1.get_headers()
+        );
+        ArrayList<String[]> all_mismatch_rows = new ArrayList<>();
+
+        for (int k=0; k<csv_file1.num_rows(); k++) {
+            ArrayList<String[]> mismatches = cp_csv_file2.get_mismatch_rows(
+                csv_file1.exclude_row_columns(k, combination), combination,
+                csv_file1.select_row_columns(k, combination)
+            );
+
+            if (mismatches.size() == 0) { continue; }
+            mismatches.add(csv_file1.get_row(k));
+            all_mismatch_rows.addAll(mismatches);
+        }
+
+        return all_mismatch_rows;
+    }
+
+    public void assert_rows_equal(
+        ArrayList<String[]> expected, ArrayList<String[]> actual
+    ) {
+        assertEquals(expected.size(), actual.size());
+        for (int k=0; k<expected.size(); k++) {
+            assertArrayEquals(expected.get(k), actual.get(k));
+        }
+    }
+
+    @Test
+    public void hash_join_mismatches() throws FilesMismatch, BadCombination {
+        /*
+        unittest for: RecordChecker.get_mismatch_rows
+        Check that the hash join in get_mismatch_rows returns exactly
+        the same rows (in the same order) as scanning every row in
+        file 2 for every row in file 1, for files that have shuffled
+        columns and duplicated combination values
+        */
+        Random generator = new Random();
+        for (int i=0; i<25; i++) {
+            FuzzCase fuzz_case = FuzzCase.generate(generator, 40);
+            CsvFile csv_file1 = fuzz_case.make_file1();
+            CsvFile csv_file2 = fuzz_case.make_file2();
+            String[] combination = fuzz_case.combination;
+            assert_rows_equal(
+                nested_scan_mismatch_rows(csv_file1, csv_file2, combination),
+                RecordChecker.get_mismatch_rows(
+                    csv_file1, csv_file2, combination
+                )
+            );
+        }
+    }
+
+    @Test
+    public void columnar_mismatches() throws FilesMismatch, BadCombination {
+        /*
+        unittest for: RecordChecker.get_mismatch_rows (ColumnarCsvFile)
+        Check that comparing dictionary encoded copies of two files
+        returns exactly the same rows (in the same order) as comparing
+        the files themselves, for files that have shuffled columns
+        and duplicated combination values
+        */
+        Random generator = new Random();
+        for (int i=0; i<25; i++) {
+            FuzzCase fuzz_case = FuzzCase.generate(generator, 40);
+            CsvFile csv_file1 = fuzz_case.make_file1();
+            CsvFile csv_file2 = fuzz_case.make_file2();
+            String[] combination = fuzz_case.combination;
+            assert_rows_equal(
+                RecordChecker.get_mismatch_rows(
+                    csv_file1, csv_file2, combination
+                ),
+                RecordChecker.get_mismatch_rows(
+                    ColumnarCsvFile.from_csv_file(csv_file1),
+                    ColumnarCsvFile.from_csv_file(csv_file2), combination
+                )
+            );
+        }
+    }
+
+    public String make_ledger_line(int id) {
+        // line of a csv file shaped like the sample files
+        String[] currencies = new String[] {"USD", "AUD", "INR", "SGD"};
+        String[] types = new String[] {"SAVINGS", "CURRENT"};
+        return (
+            "ID" + id + ",BOS" + (id * 31 % 999983) + "," +
+            currencies[id % currencies.length] + "," +
+            types[id % types.length] + "," + (id * 7919 % 1000000)
+        );
+    }
+
+    public long used_heap() {
+        // heap still in use after a full garbage collection
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int k=0; k<3; k++) { memory.gc(); }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    @Test
+    public void columnar_memory_footprint() {
+        /*
+        unittest for: ColumnarCsvFile
+        Check that 100K rows shaped like the sample files take up
+        at least 3 times less heap when stored as a dictionary encoded
+        ColumnarCsvFile than when stored in a CsvFile (each row parsed
+        from a line of text, the same way read_csv does it). Heap is
+        measured as the heap still in use after garbage collection, and
+        the memory_bytes estimates of both files must be close to it
+        */
+        final int num_rows = 100000;
+        String[] headers = RecordChecker.split_line(make_ledger_line(0));
+
+        long start_heap = used_heap();
+        ArrayList<String[]> raw_data = new ArrayList<>();
+        raw_data.add(headers);
+        for (int k=0; k<num_rows; k++) {
+            raw_data.add(RecordChecker.split_line(make_ledger_line(k)));
+        }
+        CsvFile csv_file = new CsvFile(raw_data);
+        long csv_file_bytes = used_heap() - start_heap;
+        assertEquals(num_rows, csv_file.num_rows());
+        long csv_file_estimate = csv_file.memory_bytes();
+
+        raw_data = null;
+        csv_file = null;
+        start_heap = used_heap();
+        ColumnarCsvFile columnar_file = new ColumnarCsvFile(headers);
+        for (int k=0; k<num_rows; k++) {
+            columnar_file.add_row(
+                RecordChecker.split_line(make_ledger_line(k))
+            );
+        }
+        columnar_file.trim_to_size();
+        long columnar_bytes = used_heap() - start_heap;
+        assertEquals(num_rows, columnar_file.num_rows());
+
+        assertTrue(columnar_bytes * 3 < csv_file_bytes);
+        // estimates are within 25% of the measured heap
+        assertTrue(
+            Math.abs(csv_file_estimate - csv_file_bytes) * 4 < csv_file_bytes
+        );
+        assertTrue(
+            Math.abs(columnar_file.memory_bytes() - columnar_bytes) * 4 <
+            columnar_bytes
+        );
+        assertArrayEquals(
+            RecordChecker.split_line(make_ledger_line(num_rows - 1)),
+            columnar_file.get_row(num_rows - 1)
+        );
+    }
+
+    @Test
+    public void mapped_reader_matches_readline() throws IOException {
+        /*
+        unittest for: MappedCsvReader
+        fuzz files made of commas, whitespace, line breaks (\n, \r and
+        \r\n) and multi byte characters, and check that the mapped
+        reader splits every line into the same cells as reading the
+        file with BufferedReader.readLine() and RecordChecker.split_line
+        does, even when the mapped window is only a few bytes long
+        */
+        Random generator = new Random();
+        String filename = "test_file_1.csv";
+        String[] pieces = new String[] {
+            "a", "bc", "\u00e9", ",", ",", " ", "\t", "\n", "\r", "\r\n"
+        };
+
+        for (int i=0; i<100; i++) {
+            StringBuilder content = new StringBuilder();
+            int length = generator.nextInt(60);
+            for (int k=0; k<length; k++) {
+                content.append(pieces[generator.nextInt(pieces.length)]);
+            }
+            Files.writeString(
+                Path.of(filename), content, StandardCharsets.UTF_8
+            );
+
+            ArrayList<String[]> expected = new ArrayList<>();
+            try (BufferedReader reader = Files.newBufferedReader(
+                Path.of(filename), StandardCharsets.UTF_8
+            )) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    expected.add(RecordChecker.split_line(line));
+                }
+            }
+
+            int window_size = 1 + generator.nextInt(8);
+            ArrayList<String[]> actual = new ArrayList<>();
+            try (MappedCsvReader reader = new MappedCsvReader(
+                filename, 0, -1, window_size
+            )) {
+                while (reader.next_line()) {
+                    actual.add(reader.get_cells());
+                }
+            }
+
+            assert_rows_equal(expected, actual);
+        }
+    }
+
+    @Test
+    public void mapped_reader_reuses_windows() throws
+        IOException, BadFileFormat
+    {
+        /*
+        unittest for: MappedCsvReader
+        read a file that is many times larger than the mapped window
+        and check that every row matches read_csv, while a new window
+        is only mapped once the lines run past the end of the current
+        one (instead of once for every line)
+        */
+        String filename = "test_file_1.csv";
+        int window_size = 4096;
+        StringBuilder content = new StringBuilder("a,b,c\n");
+        for (int k=0; k<20000; k++) {
+            content.append(k).append(",\u00e9").append(k % 7).append(",x\r\n");
+        }
+        Files.writeString(
+            Path.of(filename), content, StandardCharsets.UTF_8
+        );
+
+        ArrayList<String[]> rows = new ArrayList<>();
+        int num_mappings;
+        try (MappedCsvReader reader = new MappedCsvReader(
+            filename, 0, -1, window_size
+        )) {
+            while (reader.next_line()) {
+                rows.add(reader.get_cells());
+            }
+            num_mappings = reader.num_mappings();
+        }
+
+        CsvFile expected = RecordChecker.read_csv(filename);
+        assertArrayEquals(expected.get_headers(), rows.get(0));
+        assert_rows_equal(
+            expected.copy_rows(), new ArrayList<>(rows.subList(1, rows.size()))
+        );
+
+        long file_size = Files.size(Path.of(filename));
+        // every line break can force at most one extra mapping
+        // at the end of a window
+        assertTrue(num_mappings <= 2 * (file_size / window_size + 1));
+    }
+
+    @Test
+    public void read_column_mismatch() throws IOException {
+        /*
+        unittest for RecordChecker.read_csv
+        make sure read_csv fails with a BadFileFormat exception
+        when a row has more columns than the headers row
+        */
+        Files.writeString(
+            Path.of("test_file_1.csv"), "a,b\r\n1,2\r\n1,2,3\r\n"
+        );
+
+        try {
+            RecordChecker.read_csv("test_file_1.csv");
+        } catch (Exception e) {
+            assertTrue(e instanceof BadFileFormat);
+            assertEquals(RecordChecker.COL_MISMATCH, e.getMessage());
+            return;
+        }
+
+        fail("COLUMN MISMATCH SHOULD'VE THROWN ERROR");
+    }
+
+    @Test
+    public void parallel_read_matches_read_csv() throws
+        IOException, BadFileFormat
+    {
+        /*
+        unittest for: ParallelCsvParser
+        fuzz csv files with mixed line breaks and check that parsing
+        them in tiny chunks over several threads gives exactly the
+        same rows (in the same order) as RecordChecker.read_csv
+        */
+        Random generator = new Random();
+        String filename = "test_file_1.csv";
+        String[] line_breaks = new String[] {"\n", "\r", "\r\n"};
+
+        for (int i=0; i<25; i++) {
+            int num_columns = 1 + generator.nextInt(5);
+            String[] headers = make_columns(num_columns, 5);
+            ArrayList<String[]> rows = RandomString.gen_multi_row_arrs(
+                generator.nextInt(50), num_columns, 1, 5
+            );
+
+            StringBuilder content = new StringBuilder(
+                String.join(",", headers)
+            );
+            for (String[] row : rows) {
+                content.append(line_breaks[generator.nextInt(3)]);
+                content.append(String.join(",", row));
+            }
+            if (generator.nextBoolean()) { content.append("\n"); }
+            Files.writeString(Path.of(filename), content);
+
+            CsvFile expected = RecordChecker.read_csv(filename);
+            CsvFile actual = new ParallelCsvParser(
+                1 + generator.nextInt(4), 1 + generator.nextInt(20)
+            ).parse(filename);
+
+            assertArrayEquals(expected.get_headers(), actual.get_headers());
+            assert_rows_equal(expected.copy_rows(), actual.copy_rows());
+        }
+    }
+
+    @Test
+    public void parallel_read_column_mismatch() throws IOException {
+        /*
+        unittest for: ParallelCsvParser
+        make sure parsing in chunks fails with the same BadFileFormat
+        exception as read_csv when a row near the end of the file
+        has more columns than the headers row
+        */
+        StringBuilder content = new StringBuilder("a,b\n");
+        for (int k=0; k<1000; k++) { content.append("1,2\n"); }
+        content.append("1,2,3\n1,2\n");
+        Files.writeString(Path.of("test_file_1.csv"), content);
+
+        try {
+            new ParallelCsvParser(4, 16).parse("test_file_1.csv");
+        } catch (Exception e) {
+            assertTrue(e instanceof BadFileFormat);
+            assertEquals(RecordChecker.COL_MISMATCH, e.getMessage());
+            return;
+        }
+
+        fail("COLUMN MISMATCH SHOULD'VE THROWN ERROR");
+    }
+
+    @Test
+    public void partitioned_mismatches() throws FilesMismatch, BadCombination {
+        /*
+        unittest for: RecordChecker.get_mismatch_rows (with threads)
+        Check that diffing hash partitions of two files on several
+        threads returns exactly the same rows (in the same order)
+        as the single threaded diff, for files that have shuffled
+        columns and duplicated combination values
+        */
+        Random generator = new Random();
+        for (int i=0; i<25; i++) {
+            FuzzCase fuzz_case = FuzzCase.generate(generator, 40);
+            CsvFile csv_file1 = fuzz_case.make_file1();
+            CsvFile csv_file2 = fuzz_case.make_file2();
+            String[] combination = fuzz_case.combination;
+            assert_rows_equal(
+                RecordChecker.get_mismatch_rows(
+                    csv_file1, csv_file2, combination
+                ),
+                RecordChecker.get_mismatch_rows(
+                    csv_file1, csv_file2, combination,
+                    1 + generator.nextInt(4)
+                )
+            );
+        }
+    }
+
+    @Test
+    public void projection_plan_columns() {
+        /*
+        unittest for: CsvFile.select_row_columns, exclude_row_columns
+        Check that picking out the key and value columns of every row
+        through a projection plan gives the same values as picking
+        them out one by one by their column names
+        */
+        Random generator = new Random();
+        int num_columns = 2 + generator.nextInt(8);
+        String[] headers = make_columns(num_columns, 5);
+        ArrayList<String[]> rows = RandomString.gen_multi_row_arrs(
+            10, num_columns, 3, 5
+        );
+        rows.add(0, headers);
+        CsvFile csv_file = new CsvFile(rows);
+
+        List<String> shuffled = new ArrayList<>(Arrays.asList(headers));
+        Collections.shuffle(shuffled);
+        String[] columns = RandomString.arraylist_to_arr(new ArrayList<>(
+            shuffled.subList(0, 1 + generator.nextInt(num_columns - 1))
+        ));
+        ProjectionPlan plan = csv_file.get_projection_plan(columns);
+        assertTrue(plan.has_columns());
+
+        for (int k=0; k<csv_file.num_rows(); k++) {
+            String[] row = csv_file.get_row(k);
+            ArrayList<String> expected_values = new ArrayList<>();
+            for (int i=0; i<num_columns; i++) {
+                if (shuffled.indexOf(headers[i]) >= columns.length) {
+                    expected_values.add(row[i]);
+                }
+            }
+
+            String[] column_values = csv_file.select_row_columns(k, plan);
+            for (int i=0; i<columns.length; i++) {
+                int column_index = csv_file.get_column_index(columns[i]);
+                assertEquals(row[column_index], column_values[i]);
+            }
+            assertArrayEquals(
+                RandomString.arraylist_to_arr(expected_values),
+                csv_file.exclude_row_columns(k, plan)
+            );
+            assertTrue(plan.key_equals(row, column_values));
+        }
+    }
+
+    @Test
+    public void cell_values() {
+        /*
+        unittest for: CsvFile.get_cell
+        Check that reading values cell by cell gives the
+        same values as the copied rows from get_row
+        */
+        Random generator = new Random();
+        int num_columns = 1 + generator.nextInt(8);
+        String[] headers = make_columns(num_columns, 5);
+        ArrayList<String[]> rows = RandomString.gen_multi_row_arrs(
+            1 + generator.nextInt(10), num_columns, 3, 5
+        );
+        rows.add(0, headers);
+        CsvFile csv_file = new CsvFile(rows);
+
+        for (int k=0; k<csv_file.num_rows(); k++) {
+            String[] row = csv_file.get_row(k);
+            for (int i=0; i<num_columns; i++) {
+                assertEquals(row[i], csv_file.get_cell(k, i));
+            }
+        }
+    }
+
+    @Test
+    public void reordered_view_values() {
+        /*
+        unittest for: CsvFile.reorder_view
+        Check that a view with reordered columns has the same headers
+        and cells as a copy made with reorder_columns, without changing
+        the rows of the original file
+        */
+        Random generator = new Random();
+        int num_columns = 1 + generator.nextInt(8);
+        String[] headers = make_columns(num_columns, 5);
+        ArrayList<String[]> rows = RandomString.gen_multi_row_arrs(
+            1 + generator.nextInt(10), num_columns, 3, 5
+        );
+        rows.add(0, headers);
+        CsvFile csv_file = new CsvFile(rows);
+        CsvFile cp_csv_file = csv_file.clone();
+
+        List<String> shuffled = new ArrayList<>(Arrays.asList(headers));
+        Collections.shuffle(shuffled);
+        String[] new_headers = shuffled.toArray(new String[0]);
+        CsvFile reordered = csv_file.reorder_columns(new_headers);
+        ReorderedCsvFile view = csv_file.reorder_view(new_headers);
+
+        assertArrayEquals(new_headers, view.get_headers());
+        assertEquals(reordered.num_rows(), view.num_rows());
+        assertEquals(num_columns, view.num_columns());
+        for (int k=0; k<view.num_rows(); k++) {
+            assertArrayEquals(reordered.get_row(k), view.get_row(k));
+            for (int i=0; i<num_columns; i++) {
+                assertEquals(reordered.get_cell(k, i), view.get_cell(k, i));
+            }
+        }
+
+        for (int k=0; k<csv_file.num_rows(); k++) {
+            assertArrayEquals(cp_csv_file.get_row(k), csv_file.get_row(k));
+        }
+    }
+
+    @Test
+    public void key_index_matches() {
+        /*
+        unittest for: KeyIndex
+        Check that the rows found through the index for every key are
+        exactly the rows a scan of the file finds (in file order),
+        including keys whose values only differ in where they're split
+        */
+        String[] headers = new String[] {"a", "b", "c"};
+        String[] combination = new String[] {"b", "a"};
+        ArrayList<String> pool = new ArrayList<>(
+            List.of("x", "xy", "y", "yx", "")
+        );
+
+        ArrayList<String[]> rows = new ArrayList<>();
+        rows.add(headers);
+        for (int k=0; k<2000; k++) {
+            rows.add(RandomString.arraylist_to_arr(
+                RandomString.sample(pool, headers.length)
+            ));
+        }
+        CsvFile csv_file = new CsvFile(rows);
+        KeyIndex key_index = new KeyIndex(csv_file, combination);
+        ProjectionPlan plan = csv_file.get_projection_plan(combination);
+
+        HashSet<List<String>> keys = new HashSet<>();
+        for (String value1 : pool) {
+            for (String value2 : pool) {
+                String[] key = new String[] {value1, value2};
+                ArrayList<Integer> expected = new ArrayList<>();
+                for (int k=0; k<csv_file.num_rows(); k++) {
+                    if (plan.key_equals(csv_file.peek_row(k), key)) {
+                        expected.add(k);
+                    }
+                }
+
+                assertEquals(expected, key_index.get_matches(key));
+                assertEquals(expected.size() > 0, key_index.has_matches(key));
+                if (expected.size() > 0) { keys.add(List.of(key)); }
+            }
+        }
+
+        assertEquals(keys.size(), key_index.num_keys());
+        for (int k=0; k<csv_file.num_rows(); k++) {
+            // every row is found by looking up its own key
+            String[] row = csv_file.peek_row(k);
+            int row_index = key_index.first_match(row, plan);
+            while (row_index != -1 && row_index != k) {
+                row_index = key_index.next_match(row_index);
+            }
+            assertEquals(k, row_index);
+        }
+
+        String[] missing = new String[] {"xyx", ""};
+        assertFalse(key_index.has_matches(missing));
+        assertEquals(0, key_index.get_matches(missing).size());
+    }
+
+    @Test
+    public void key_index_row_subset() {
+        /*
+        unittest for: KeyIndex
+        Check that an index built on only some rows of a file finds
+        exactly the rows of the subset with each key (in file order),
+        and none of the rows left out of it
+        */
+        String[] headers = new String[] {"a", "b"};
+        String[] combination = new String[] {"a"};
+        ArrayList<String> pool = new ArrayList<>(List.of("x", "y", "z"));
+
+        ArrayList<String[]> rows = new ArrayList<>();
+        rows.add(headers);
+        for (int k=0; k<500; k++) {
+            rows.add(RandomString.arraylist_to_arr(
+                RandomString.sample(pool, headers.length)
+            ));
+        }
+        CsvFile csv_file = new CsvFile(rows);
+        // every 3rd row of the file
+        int[] row_indexes = new int[(csv_file.num_rows() + 2) / 3];
+        for (int k=0; k<row_indexes.length; k++) { row_indexes[k] = 3 * k; }
+
+        KeyIndex key_index = new KeyIndex(csv_file, combination, row_indexes);
+        ProjectionPlan plan = csv_file.get_projection_plan(combination);
+
+        for (String value : pool) {
+            String[] key = new String[] {value};
+            ArrayList<Integer> expected = new ArrayList<>();
+            for (int row_index : row_indexes) {
+                if (plan.key_equals(csv_file.peek_row(row_index), key)) {
+                    expected.add(row_index);
+                }
+            }
+
+            ArrayList<Integer> matches = new ArrayList<>();
+            for (int match : key_index.get_matches(key)) {
+                matches.add(key_index.get_row_index(match));
+            }
+            assertEquals(expected, matches);
+        }
+    }
+
+    @Test
+    public void row_value_hashes() throws
+        IOException, BadCombination, FilesMismatch
+    {
+        /*
+        unittest for: CsvFile.hash_row_values
+        Check that row value hashes don't depend on the order of the
+        columns or on the combination values, and that diffing with
+        them gives the same mismatches as diffing without them
+        */
+        Random generator = new Random();
+        String[] headers = new String[] {"a", "b", "c", "d"};
+        String[] combination = new String[] {"c", "a"};
+        ArrayList<String> pool = new ArrayList<>(List.of("x", "xy", "y"));
+
+        ArrayList<String[]> rows1 = new ArrayList<>();
+        ArrayList<String[]> rows2 = new ArrayList<>();
+        rows1.add(headers);
+        rows2.add(headers);
+        for (int k=0; k<500; k++) {
+            rows1.add(RandomString.arraylist_to_arr(
+                RandomString.sample(pool, headers.length)
+            ));
+            rows2.add(RandomString.arraylist_to_arr(
+                RandomString.sample(pool, headers.length)
+            ));
+        }
+
+        CsvFile csv_file1 = new CsvFile(rows1);
+        CsvFile csv_file2 = new CsvFile(rows2);
+        long[] hashes1 = csv_file1.hash_row_values(combination);
+        CsvFile scrambled_file1 = csv_file1.clone();
+        scrambled_file1.scramble_columns_inplace();
+        assertArrayEquals(
+            hashes1, scrambled_file1.hash_row_values(combination)
+        );
+
+        for (int k=0; k<csv_file1.num_rows(); k++) {
+            String[] row = csv_file1.get_row(k);
+            // only the combination values differ
+            row[0] = pool.get(generator.nextInt(pool.size()));
+            row[2] = pool.get(generator.nextInt(pool.size()));
+            CsvFile changed_file = new CsvFile(new ArrayList<>(
+                List.of(headers, row)
+            ));
+            assertEquals(
+                hashes1[k], changed_file.hash_row_values(combination)[0]
+            );
+        }
+
+        csv_file2.scramble_columns_inplace();
+        ArrayList<String[]> hashed_rows = new ArrayList<>();
+        RecordChecker.write_mismatch_rows(
+            csv_file1,
+            RecordChecker.reorder_view_to_match(
+                csv_file1, csv_file2, combination
+            ),
+            new KeyIndex(csv_file2, combination), hashes1,
+            csv_file2.hash_row_values(combination), combination,
+            hashed_rows::add
+        );
+        assertArrayEquals(
+            RecordChecker.get_mismatch_rows(
+                csv_file1, csv_file2, combination
+            ).toArray(),
+            hashed_rows.toArray()
+        );
+    }
+
+    @Test
+    public void checker_log_levels() throws
+        BadCombination, InterruptedException
+    {
+        /*
+        unittest for: CheckerLog, AsyncLogger
+        Check that nothing is logged without a logger, that messages
+        below the level of the logger are dropped, and that an async
+        logger passes on the messages of every thread in queued order
+        */
+        ArrayList<String> messages = new ArrayList<>();
+        CheckerLogger list_logger = (level, message, error) -> {
+            messages.add(level + " " + message);
+        };
+        CheckerLogger old_logger = CheckerLog.get_logger();
+
+        try {
+            CheckerLog.set_logger(null, LogLevel.DEBUG);
+            assertFalse(CheckerLog.is_enabled(LogLevel.ERROR));
+            CheckerLog.log(LogLevel.ERROR, "dropped");
+
+            CheckerLog.set_logger(list_logger, LogLevel.INFO);
+            assertFalse(CheckerLog.is_enabled(LogLevel.DEBUG));
+            assertTrue(CheckerLog.is_enabled(LogLevel.WARN));
+            CheckerLog.log(LogLevel.DEBUG, "dropped");
+            CheckerLog.log(LogLevel.WARN, "warning");
+            RecordChecker.parse_combination("a, b");
+            assertEquals(
+                List.of("WARN warning", "INFO COMBINATION [a, b]"), messages
+            );
+            messages.clear();
+
+            AsyncLogger async_logger = new AsyncLogger(list_logger);
+            CheckerLog.set_logger(async_logger, LogLevel.DEBUG);
+            ArrayList<Thread> threads = new ArrayList<>();
+            for (int k=0; k<4; k++) {
+                int thread_number = k;
+                threads.add(new Thread(() -> {
+                    for (int i=0; i<500; i++) {
+                        CheckerLog.log(LogLevel.DEBUG, thread_number + ":" + i);
+                    }
+                }));
+            }
+            for (Thread thread : threads) { thread.start(); }
+            for (Thread thread : threads) { thread.join(); }
+            async_logger.close();
+
+            // messages of each thread stay in the order they were logged
+            // (and the queue never fills up, so none are dropped)
+            assertEquals(0, async_logger.num_dropped());
+            assertEquals(2000, messages.size());
+            int[] next_message = new int[4];
+            for (String message : messages) {
+                String[] parts = message.substring(6).split(":");
+                int thread_number = Integer.parseInt(parts[0]);
+                int message_number = Integer.parseInt(parts[1]);
+                assertTrue(message_number >= next_message[thread_number]);
+                next_message[thread_number] = message_number + 1;
+            }
+
+            async_logger.log(LogLevel.INFO, "after close", null);
+            assertEquals(1, async_logger.num_dropped());
+            assertEquals(2000, messages.size());
+        } finally {
+            CheckerLog.set_logger(old_logger, LogLevel.INFO);
+        }
+    }
+
+    @Test
+    public void mismatch_writer_bytes() throws IOException {
+        /*
+        unittest for: MismatchWriter
+        Check that rows written through the MismatchWriter (with a tiny
+        buffer so that it has to flush many times) give exactly the same
+        bytes as writing the rows with a UTF-8 FileWriter
+        */
+        ArrayList<String[]> rows = RandomString.gen_multi_row_arrs(
+            200, 4, 0, 40
+        );
+        rows.add(new String[] {"caf\u00e9", "\u20ac5", "", "\ud83d\ude00"});
+        rows.add(new String[] {RandomString.generate(100)});
+        rows.add(new String[] {});
+
+        String expected_path = "mismatch_writer_expected.csv";
+        String actual_path = "mismatch_writer_actual.csv";
+
+        try (FileWriter writer = new FileWriter(
+            expected_path, StandardCharsets.UTF_8
+        )) {
+            for (String[] row : rows) {
+                writer.write(String.join(",", row));
+                writer.write("\n");
+            }
+        }
+
+        try (MismatchWriter writer = new MismatchWriter(actual_path, true, 16)) {
+            for (String[] row : rows) {
+                writer.add_row(row);
+            }
+            assertEquals(rows.size(), writer.rows_written());
+        }
+
+        byte[] expected = Files.readAllBytes(Path.of(expected_path));
+        byte[] actual = Files.readAllBytes(Path.of(actual_path));
+        Files.delete(Path.of(expected_path));
+        Files.delete(Path.of(actual_path));
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void queued_sink_order() throws IOException {
+        /*
+        unittest for: QueuedMismatchSink
+        Check that rows passed through the queue to the writer thread
+        reach the other sink in the same order they were added in,
+        including when the queue is full and the last batch is partial
+        */
+        int num_rows = 5 * QueuedMismatchSink.BATCH_SIZE + 7;
+        ArrayList<String[]> rows = RandomString.gen_multi_row_arrs(
+            num_rows, 3, 1, 5
+        );
+        ArrayList<String[]> received = new ArrayList<>();
+
+        try (QueuedMismatchSink queue = new QueuedMismatchSink(
+            received::add, 1
+        )) {
+            for (String[] row : rows) {
+                queue.add_row(row);
+            }
+        }
+
+        assert_rows_equal(rows, received);
+    }
+
+    @Test
+    public void queued_sink_failure() {
+        /*
+        unittest for: QueuedMismatchSink
+        Check that an error thrown by the other sink on the writer
+        thread is rethrown to the thread adding rows
+        */
+        MismatchSink failing_sink = row -> {
+            throw new IOException("FILE WRITE FAILED");
+        };
+
+        try (QueuedMismatchSink queue = new QueuedMismatchSink(
+            failing_sink, 1
+        )) {
+            for (int k=0; k<10 * QueuedMismatchSink.BATCH_SIZE; k++) {
+                queue.add_row(new String[] {"a", "b"});
+            }
+        } catch (IOException e) {
+            assertEquals("FILE WRITE FAILED", e.getMessage());
+            return;
+        }
+
+        fail("WRITER THREAD ERROR WASN'T RETHROWN");
+    }
+
+    @Test
+    public void queued_sink_unchecked_failure() {
+        /*
+        unittest for: QueuedMismatchSink
+        Check that an unchecked exception thrown by the other sink
+        doesn't silently stop the writer thread: close has to fail
+        instead of returning as if every row had been written
+        */
+        UncheckedIOException error = new UncheckedIOException(
+            new IOException("FILE WRITE FAILED")
+        );
+        MismatchSink failing_sink = row -> { throw error; };
+
+        try (QueuedMismatchSink queue = new QueuedMismatchSink(
+            failing_sink, 8
+        )) {
+            for (int k=0; k<3 * QueuedMismatchSink.BATCH_SIZE + 1; k++) {
+                queue.add_row(new String[] {"a", "b"});
+            }
+        } catch (IOException e) {
+            assertEquals(error, e.getCause().getCause());
+            return;
+        }
+
+        fail("WRITER THREAD ERROR WASN'T RETHROWN");
+    }
+
+    @Test
+    public void key_hasher_strings_match_bytes() {
+        /*
+        unittest for: KeyHasher.hash_string
+        Check that hashing a String gives the same hash as
+        hashing its UTF-8 bytes, including for non ASCII values
+        */
+        ArrayList<String> values = RandomString.generate_multi(50, 0, 10);
+        values.add("caf\u00e9");
+        values.add("\u20ac5");
+        values.add("\ud83d\ude00");
+        values.add("\ud83d");
+
+        for (String value : values) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            assertEquals(
+                KeyHasher.hash_bytes(KeyHasher.SEED, bytes, 0, bytes.length),
+                KeyHasher.hash_string(KeyHasher.SEED, value)
+            );
+        }
+
+        // moving characters between values changes the hash
+        assertNotEquals(
+            KeyHasher.hash_cells(new String[] {"ab", "c"}, new int[] {0, 1}),
+            KeyHasher.hash_cells(new String[] {"a", "bc"}, new int[] {0, 1})
+        );
+    }
+
+    @Test
+    public void row_fingerprints_sidecar() throws IOException {
+        /*
+        unittest for: RowFingerprints
+        Check that fingerprints saved to a sidecar file load back with
+        the same keys (including mixed keys), and that the sidecar is
+        ignored when the csv file it was made from has changed
+        */
+        Random generator = new Random();
+        RowFingerprints fingerprints = new RowFingerprints(1);
+        RowFingerprints other = new RowFingerprints(1);
+        long[] key_hashes = new long[500];
+
+        for (int k=0; k<key_hashes.length; k++) {
+            key_hashes[k] = generator.nextLong();
+            long value_hash = generator.nextLong();
+            fingerprints.add(key_hashes[k], value_hash);
+            // every 3rd key has a different value in the other file
+            other.add(key_hashes[k], value_hash + ((k % 3 == 0) ? 1 : 0));
+            // every 5th key is mixed
+            if (k % 5 == 0) { fingerprints.add(key_hashes[k], value_hash); }
+        }
+
+        Path sidecar = Path.of(
+            "test_file_1.csv" + RowFingerprints.SIDECAR_SUFFIX
+        );
+        String[] combination = new String[] {"key"};
+        fingerprints.save(sidecar, 100, 200, 300, combination);
+        RowFingerprints loaded = RowFingerprints.load(
+            sidecar, 100, 200, 300, combination
+        );
+
+        assertNotNull(loaded);
+        assertEquals(key_hashes.length, loaded.num_keys());
+        for (int k=0; k<key_hashes.length; k++) {
+            boolean expected = (k % 3 == 0) || (k % 5 == 0);
+            assertEquals(expected, loaded.needs_compare(key_hashes[k], other));
+            assertEquals(expected, other.needs_compare(key_hashes[k], loaded));
+        }
+        assertFalse(loaded.needs_compare(generator.nextLong(), other));
+
+        assertNull(RowFingerprints.load(sidecar, 101, 200, 300, combination));
+        assertNull(RowFingerprints.load(sidecar, 100, 201, 300, combination));
+        assertNull(RowFingerprints.load(sidecar, 100, 200, 301, combination));
+        assertNull(RowFingerprints.load(
+            sidecar, 100, 200, 300, new String[] {"other"}
+        ));
+        Files.delete(sidecar);
+    }
+
+    @Test
+    public void row_fingerprints_same_size_rewrite() throws
+        IOException, BadFileFormat, BadCombination
+    {
+        /*
+        unittest for: RowFingerprints.load_or_compute
+        Check that the sidecar of a csv file isn't reused once the file
+        is rewritten with different values, even when the new file has
+        the same size and modification time as the old one
+        */
+        String[] combination = new String[] {"key"};
+        int[] key_indexes = new int[] {0};
+        Path path = Files.createTempFile("fingerprints", ".csv");
+        Path sidecar = Path.of(path + RowFingerprints.SIDECAR_SUFFIX);
+
+        try {
+            Files.writeString(path, "key,value\na,1\nb,2\n");
+            FileTime modified = Files.getLastModifiedTime(path);
+            RowFingerprints old_fingerprints = (
+                RowFingerprints.load_or_compute(path.toString(), combination)
+            );
+
+            Files.writeString(path, "key,value\na,3\nb,2\n");
+            Files.setLastModifiedTime(path, modified);
+            RowFingerprints fingerprints = RowFingerprints.load_or_compute(
+                path.toString(), combination
+            );
+            RowFingerprints expected = RowFingerprints.compute(
+                path.toString(), combination
+            );
+
+            long key_a = KeyHasher.hash_cells(new String[] {"a"}, key_indexes);
+            long key_b = KeyHasher.hash_cells(new String[] {"b"}, key_indexes);
+            assertTrue(old_fingerprints.needs_compare(key_a, expected));
+            assertFalse(fingerprints.needs_compare(key_a, expected));
+            assertFalse(fingerprints.needs_compare(key_b, expected));
+        } finally {
+            Files.deleteIfExists(sidecar);
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void snapshot_matches_read_csv() throws
+        IOException, BadFileFormat
+    {
+        /*
+        unittest for: CsvSnapshot
+        Check that files loaded from their snapshots have exactly the
+        same rows as reading them with read_csv, and that a snapshot
+        isn't used once the file it was made from changes, even if the
+        size and modification time of the file stay the same
+        */
+        Random generator = new Random();
+        String filename = "test_file_1.csv";
+        Path snapshot = Path.of(filename + CsvSnapshot.SNAPSHOT_SUFFIX);
+
+        for (int i=0; i<25; i++) {
+            Files.deleteIfExists(snapshot);
+            int num_columns = 1 + generator.nextInt(5);
+            String[] headers = make_columns(num_columns, 5);
+            // a large pool of values makes some columns need 2 byte codes
+            int pool_size = (i % 2 == 0) ? 3 : 300;
+            ArrayList<String> pool = RandomString.generate_multi_exc(
+                pool_size, 4
+            );
+            CsvFile csv_file = new CsvFile(FuzzCase.make_overlapping_rows(
+                headers, generator.nextInt(2000), pool
+            ));
+            csv_file.export_csv(filename);
+
+            CsvFile expected = RecordChecker.read_csv(filename);
+            // first read writes the snapshot, second read loads it
+            for (int k=0; k<2; k++) {
+                CsvFile actual = CsvSnapshot.read_csv(filename);
+                assertArrayEquals(expected.get_headers(), actual.get_headers());
+                assertEquals(expected.num_rows(), actual.num_rows());
+                for (int row=0; row<expected.num_rows(); row++) {
+                    assertArrayEquals(
+                        expected.get_row(row), actual.get_row(row)
+                    );
+                }
+                assertTrue(Files.exists(snapshot));
+            }
+
+            if (expected.num_rows() == 0) { continue; }
+            // change a single character of the file, keeping
+            // both its size and its modification time the same
+            Path path = Path.of(filename);
+            FileTime modified = Files.getLastModifiedTime(path);
+            byte[] contents = Files.readAllBytes(path);
+            int position = contents.length - 2;
+            contents[position] = (byte) (contents[position] == 'x' ? 'y' : 'x');
+            Files.write(path, contents);
+            Files.setLastModifiedTime(path, modified);
+
+            CsvFile changed = CsvSnapshot.read_csv(filename);
+            assertArrayEquals(
+                RecordChecker.read_csv(filename).get_row(
+                    expected.num_rows() - 1
+                ),
+                changed.get_row(expected.num_rows() - 1)
+            );
+        }
+
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Test
+    public void parsed_file_cache() throws IOException, BadFileFormat {
+        /*
+        unittest for: ParsedFileCache
+        Check that cached files, key indexes and row value hashes are
+        reused (and counted as hits), that a file is read in again
+        once it changes, and that least recently used files are
+        evicted once the cache goes over its byte budget
+        */
+        String filename1 = "test_file_1.csv";
+        String filename2 = "test_file_2.csv";
+        String[] headers = new String[] {"key", "value"};
+        ArrayList<String[]> rows = RandomString.gen_multi_row_arrs(
+            100, 2, 3, 5
+        );
+        rows.add(0, headers);
+        new CsvFile(rows).export_csv(filename1);
+        new CsvFile(rows).export_csv(filename2);
+
+        ParsedFileCache cache = new ParsedFileCache(1L << 30);
+        CachedCsvFile cached_file = cache.get(filename1);
+        assertSame(cached_file, cache.get(" " + filename1 + " "));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+
+        String[] combination = new String[] {"key"};
+        KeyIndex key_index = cached_file.get_key_index(combination);
+        assertSame(key_index, cached_file.get_key_index(combination));
+        long[] hashes = cached_file.get_value_hashes(combination);
+        assertSame(hashes, cached_file.get_value_hashes(combination));
+        assertEquals(3, cache.hits());
+        assertEquals(3, cache.misses());
+        assertEquals(cached_file.memory_bytes, cache.used_bytes());
+
+        // a changed file isn't used from the cache
+        Path path1 = Path.of(filename1);
+        rows.remove(rows.size() - 1);
+        new CsvFile(rows).export_csv(filename1);
+        Files.setLastModifiedTime(path1, FileTime.fromMillis(1000));
+        CachedCsvFile changed_file = cache.get(filename1);
+        assertNotSame(cached_file, changed_file);
+        assertEquals(99, changed_file.get_csv_file().num_rows());
+        assertEquals(4, cache.misses());
+
+        // budget only fits a single file
+        cache.set_budget_bytes(changed_file.memory_bytes * 3 / 2);
+        assertEquals(0, cache.evictions());
+        cache.get(filename2);
+        assertEquals(1, cache.num_files());
+        assertEquals(1, cache.evictions());
+        assertEquals(5, cache.misses());
+        cache.get(filename1);
+        assertEquals(6, cache.misses());
+    }
 }